@@ -0,0 +1,53 @@
+package com.example.core.workflows;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Marks an approval workflow as escalated.
+ *
+ * Shared by everything that escalates (the escalation check step, the
+ * escalation scheduler) so an escalation looks the same in the metadata and
+ * the approval history no matter what detected it. Works on any
+ * {@code Map<String, Object>}: the workflow MetaDataMap inside a step, or the
+ * instance's metaData node (as a ModifiableValueMap) outside one.
+ */
+public final class ApprovalEscalation {
+
+    public static final String ESCALATED = "escalated";
+    public static final String CURRENT_STEP_LEVEL = "currentStepLevel";
+    public static final String CURRENT_STEP_START_TIME = "currentStepStartTime";
+
+    private ApprovalEscalation() {
+    }
+
+    /**
+     * @return true if the workflow has already been escalated
+     */
+    public static boolean isEscalated(Map<String, Object> metadata) {
+        Object escalated = metadata.get(ESCALATED);
+        return Boolean.TRUE.equals(escalated) || "true".equals(escalated);
+    }
+
+    /**
+     * Record the escalation and append it to the approval history.
+     *
+     * @param metadata Workflow metadata
+     * @param hoursElapsed Time the step has been waiting
+     * @param thresholdHours Escalation threshold of the step
+     * @param escalationTarget Group the approval is escalated to
+     */
+    public static void apply(Map<String, Object> metadata, long hoursElapsed, long thresholdHours,
+                             String escalationTarget) {
+        metadata.put(ESCALATED, true);
+        metadata.put("escalationTime", new Date());
+        metadata.put("escalationReason",
+            String.format("Approval timeout: %d hours exceeded threshold of %d hours",
+                hoursElapsed, thresholdHours));
+        metadata.put("escalationTarget", escalationTarget);
+
+        ApprovalHistory.append(metadata, new ApprovalHistory.Entry(System.currentTimeMillis(),
+            "Escalation Check", "ESCALATION", "system",
+            String.format("Timeout after %d hours", hoursElapsed)));
+    }
+}
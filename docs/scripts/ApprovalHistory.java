@@ -0,0 +1,186 @@
+package com.example.core.workflows;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Append-only approval history stored in workflow metadata.
+ *
+ * Each decision is written as its own metadata entry
+ * ({@code approvalHistory.0}, {@code approvalHistory.1}, ...) holding the
+ * structured fields as a multi-value property, plus a counter. Appending
+ * writes one small entry instead of re-reading and re-writing the whole
+ * history, so long approval chains no longer cost O(n^2) and metadata saves
+ * stay small. Readers stream the entries in order.
+ *
+ * Works on any {@code Map<String, Object>}: the workflow MetaDataMap inside a
+ * step, or the instance's metaData node (as a ModifiableValueMap) outside one.
+ *
+ * Histories written by earlier versions as one newline-separated
+ * {@code approvalHistory} string are still read, ahead of the structured entries.
+ */
+public final class ApprovalHistory {
+
+    /** Number of structured entries */
+    public static final String COUNT_KEY = "approvalHistoryCount";
+
+    /** Prefix of the per-entry keys; the suffix is the entry index */
+    public static final String ENTRY_KEY_PREFIX = "approvalHistory.";
+
+    /** Single-string history written by earlier versions */
+    public static final String LEGACY_KEY = "approvalHistory";
+
+    private ApprovalHistory() {
+    }
+
+    /**
+     * Append an entry. Only the new entry and the counter are written.
+     *
+     * @param metadata Workflow metadata
+     * @param entry The entry to append
+     */
+    public static void append(Map<String, Object> metadata, Entry entry) {
+        int index = size(metadata);
+        metadata.put(ENTRY_KEY_PREFIX + index, entry.encode());
+        metadata.put(COUNT_KEY, index + 1);
+    }
+
+    /**
+     * @return Number of structured entries (legacy lines not included)
+     */
+    public static int size(Map<String, Object> metadata) {
+        Object count = metadata.get(COUNT_KEY);
+        if (count instanceof Number) {
+            return ((Number) count).intValue();
+        }
+        if (count instanceof String) {
+            try {
+                return Integer.parseInt((String) count);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stream the history, oldest first. Entries are read one at a time as
+     * the stream is consumed.
+     *
+     * @param metadata Workflow metadata
+     * @return Legacy lines (if any) followed by the structured entries
+     */
+    public static Stream<Entry> stream(Map<String, Object> metadata) {
+        Object legacy = metadata.get(LEGACY_KEY);
+        Stream<Entry> legacyEntries = legacy instanceof String && !((String) legacy).isEmpty()
+            ? ((String) legacy).lines().filter(line -> !line.isEmpty()).map(Entry::legacy)
+            : Stream.empty();
+        Stream<Entry> entries = IntStream.range(0, size(metadata))
+            .mapToObj(index -> Entry.decode(metadata.get(ENTRY_KEY_PREFIX + index)));
+        return Stream.concat(legacyEntries, entries);
+    }
+
+    /**
+     * One approval decision or system event (e.g. an escalation).
+     */
+    public static final class Entry {
+
+        private final long timestamp;
+        private final String step;
+        private final String action;
+        private final String actor;
+        private final String comments;
+        private final String legacyText;
+
+        public Entry(long timestamp, String step, String action, String actor, String comments) {
+            this.timestamp = timestamp;
+            this.step = step;
+            this.action = action;
+            this.actor = actor;
+            this.comments = comments != null ? comments : "";
+            this.legacyText = null;
+        }
+
+        private Entry(String legacyText) {
+            this.timestamp = 0;
+            this.step = "";
+            this.action = "";
+            this.actor = "";
+            this.comments = "";
+            this.legacyText = legacyText;
+        }
+
+        static Entry legacy(String line) {
+            return new Entry(line);
+        }
+
+        String[] encode() {
+            return new String[] {Long.toString(timestamp), step, action, actor, comments};
+        }
+
+        static Entry decode(Object value) {
+            if (value instanceof String[]) {
+                String[] fields = (String[]) value;
+                if (fields.length >= 5) {
+                    long timestamp;
+                    try {
+                        timestamp = Long.parseLong(fields[0]);
+                    } catch (NumberFormatException e) {
+                        timestamp = 0;
+                    }
+                    return new Entry(timestamp, fields[1], fields[2], fields[3], fields[4]);
+                }
+            }
+            return new Entry(String.valueOf(value));
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getStep() {
+            return step;
+        }
+
+        /**
+         * @return Decision (APPROVE, REJECT) or event (ESCALATION)
+         */
+        public String getAction() {
+            return action;
+        }
+
+        public String getActor() {
+            return actor;
+        }
+
+        public String getComments() {
+            return comments;
+        }
+
+        /**
+         * @return true if this entry was read from a pre-structured history string
+         */
+        public boolean isLegacy() {
+            return legacyText != null;
+        }
+
+        /**
+         * @return One human-readable line, e.g. "[2026-01-01 09:00:00] Review: APPROVE by jdoe - ok"
+         */
+        public String format() {
+            if (legacyText != null) {
+                return legacyText;
+            }
+            Date date = new Date(timestamp);
+            return String.format("[%tF %tT] %s: %s by %s%s",
+                date, date, step, action, actor, comments.isEmpty() ? "" : " - " + comments);
+        }
+
+        @Override
+        public String toString() {
+            return format();
+        }
+    }
+}
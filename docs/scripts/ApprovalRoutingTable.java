@@ -0,0 +1,380 @@
+package com.example.core.workflows;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Configurable routing of hierarchical approvals: payload path, content type
+ * and approval level to approver group and escalation target.
+ *
+ * Rules are OSGi configuration, one per line:
+ *
+ * <pre>
+ * pathPattern|contentType|level|approverGroup|escalationTarget
+ * /content/*&#47;hr/**|cq:Page|2|hr-directors|content-governance
+ * </pre>
+ *
+ * Path patterns match segment by segment: a literal name, {@code *} for any
+ * one segment, {@code **} for any number of segments (including none).
+ * Content type is the payload's resource type (e.g. cq:Page, dam:Asset) and
+ * level the approval level; both accept {@code *}. Groups may contain a
+ * {@code {department}} placeholder, replaced with the sanitized department
+ * segment of the payload path.
+ *
+ * The rules are compiled once into a path trie and swapped atomically on
+ * configuration change, so a lookup is an in-memory walk of the payload path
+ * with no repository access and no allocation beyond the placeholder
+ * expansion. When several rules match, literal segments win over {@code *},
+ * {@code *} over {@code **}, and a specific level or content type over
+ * {@code *}; remaining ties go to the rule listed first.
+ */
+@Component(service = ApprovalRoutingTable.class)
+@Designate(ocd = ApprovalRoutingTable.Config.class)
+public class ApprovalRoutingTable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApprovalRoutingTable.class);
+
+    private static final String ANY = "*";
+    private static final String ANY_PATH = "**";
+    private static final String DEPARTMENT = "{department}";
+    private static final String DEFAULT_DEPARTMENT = "default";
+    private static final int ANY_LEVEL = 0;
+
+    @ObjectClassDefinition(
+        name = "Example - Approval Routing Table",
+        description = "Routes hierarchical approvals to approver groups and escalation targets"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Rules",
+            description = "pathPattern|contentType|level|approverGroup|escalationTarget")
+        String[] rules() default {
+            "/**|*|1|{department}-reviewers|department-managers",
+            "/**|*|2|{department}-managers|content-governance",
+            "/**|*|3|content-governance|administrators"
+        };
+
+        @AttributeDefinition(name = "Department segment",
+            description = "0-based payload path segment substituted for {department}")
+        int department_segment() default 2;
+
+        @AttributeDefinition(name = "Default approver group", description = "Used when no rule matches")
+        String default_group() default "administrators";
+
+        @AttributeDefinition(name = "Default escalation target",
+            description = "Used when no rule matches or the matching rule has no target")
+        String default_escalation_target() default "administrators";
+    }
+
+    private volatile Table table = new Table(new Node(), 2, "administrators", "administrators", false);
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        table = compile(config);
+        LOG.info("Approval routing table compiled from {} rule(s)", config.rules().length);
+    }
+
+    /**
+     * @return The approver group for the payload and level, never null
+     */
+    public String getApproverGroup(String payloadPath, String contentType, int level) {
+        Table current = table;
+        Rule rule = current.find(payloadPath, contentType, level);
+        return rule != null ? rule.approverGroup.expand(current.department(payloadPath)) : current.defaultGroup;
+    }
+
+    /**
+     * @return The escalation target for the payload and level, never null
+     */
+    public String getEscalationTarget(String payloadPath, String contentType, int level) {
+        Table current = table;
+        Rule rule = current.find(payloadPath, contentType, level);
+        return rule != null && rule.escalationTarget != null
+            ? rule.escalationTarget.expand(current.department(payloadPath))
+            : current.defaultEscalationTarget;
+    }
+
+    /**
+     * Content type of the payload as matched by the rules. Only read from the
+     * repository if some rule restricts the content type.
+     *
+     * @return The payload's resource type, or null if not needed or not found
+     */
+    public String getContentType(ResourceResolver resolver, String payloadPath) {
+        if (!table.usesContentTypes || resolver == null || payloadPath == null) {
+            return null;
+        }
+        Resource resource = resolver.getResource(payloadPath);
+        return resource != null ? resource.getResourceType() : null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Compilation
+    // ------------------------------------------------------------------------
+
+    private static Table compile(Config config) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : config.rules()) {
+            if (line == null || line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                rules.add(Rule.parse(line.trim(), rules.size()));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Ignoring approval routing rule '{}': {}", line, e.getMessage());
+            }
+        }
+
+        Node root = new Node();
+        boolean usesContentTypes = false;
+        for (Rule rule : rules) {
+            Node node = root;
+            for (String segment : rule.segments) {
+                node = node.child(segment);
+            }
+            node.add(rule);
+            usesContentTypes |= rule.contentType != null;
+        }
+        root.seal();
+        return new Table(root, config.department_segment(), config.default_group(),
+            config.default_escalation_target(), usesContentTypes);
+    }
+
+    private static final class Table {
+
+        private final Node root;
+        private final int departmentSegment;
+        private final String defaultGroup;
+        private final String defaultEscalationTarget;
+        private final boolean usesContentTypes;
+
+        private Table(Node root, int departmentSegment, String defaultGroup, String defaultEscalationTarget,
+                      boolean usesContentTypes) {
+            this.root = root;
+            this.departmentSegment = departmentSegment;
+            this.defaultGroup = defaultGroup;
+            this.defaultEscalationTarget = defaultEscalationTarget;
+            this.usesContentTypes = usesContentTypes;
+        }
+
+        private Rule find(String path, String contentType, int level) {
+            return root.match(path != null ? path : "", 0, contentType, level);
+        }
+
+        private String department(String path) {
+            String department = PayloadPaths.sanitizeGroupName(PayloadPaths.segment(path, departmentSegment));
+            return department == null || department.isEmpty() ? DEFAULT_DEPARTMENT : department;
+        }
+    }
+
+    /**
+     * Path trie node. Children are kept in arrays and compared in place
+     * against the payload path, so matching never creates segment strings.
+     */
+    private static final class Node {
+
+        private String[] names = new String[0];
+        private Node[] literals = new Node[0];
+        private Node anySegment;
+        private Node anyPath;
+        private List<Rule> pending = new ArrayList<>();
+        private Rule[] rules = new Rule[0];
+
+        private Node child(String segment) {
+            if (ANY_PATH.equals(segment)) {
+                return anyPath != null ? anyPath : (anyPath = new Node());
+            }
+            if (ANY.equals(segment)) {
+                return anySegment != null ? anySegment : (anySegment = new Node());
+            }
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(segment)) {
+                    return literals[i];
+                }
+            }
+            names = Arrays.copyOf(names, names.length + 1);
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            names[names.length - 1] = segment;
+            return literals[literals.length - 1] = new Node();
+        }
+
+        private void add(Rule rule) {
+            pending.add(rule);
+        }
+
+        private void seal() {
+            pending.sort(Comparator.comparingInt(Rule::genericity).thenComparingInt(rule -> rule.order));
+            rules = pending.toArray(new Rule[0]);
+            pending = null;
+            for (Node literal : literals) {
+                literal.seal();
+            }
+            if (anySegment != null) {
+                anySegment.seal();
+            }
+            if (anyPath != null) {
+                anyPath.seal();
+            }
+        }
+
+        private Rule select(String contentType, int level) {
+            for (Rule rule : rules) {
+                if (rule.matches(contentType, level)) {
+                    return rule;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Match the rest of the path from pos: literal children first, then
+         * {@code *}, then {@code **}.
+         */
+        private Rule match(String path, int pos, String contentType, int level) {
+            int length = path.length();
+            int start = pos;
+            while (start < length && path.charAt(start) == '/') {
+                start++;
+            }
+            if (start == length) {
+                Rule rule = select(contentType, level);
+                return rule != null || anyPath == null ? rule : anyPath.select(contentType, level);
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            Rule rule;
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i];
+                if (name.length() == end - start && path.regionMatches(start, name, 0, name.length())) {
+                    rule = literals[i].match(path, end, contentType, level);
+                    if (rule != null) {
+                        return rule;
+                    }
+                }
+            }
+            if (anySegment != null) {
+                rule = anySegment.match(path, end, contentType, level);
+                if (rule != null) {
+                    return rule;
+                }
+            }
+            if (anyPath != null) {
+                // ** consumes zero or more segments, fewest first
+                int next = start;
+                while (true) {
+                    rule = anyPath.match(path, next, contentType, level);
+                    if (rule != null || next == length) {
+                        return rule;
+                    }
+                    int slash = path.indexOf('/', next + 1);
+                    next = slash < 0 ? length : slash;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Rule {
+
+        private final String[] segments;
+        private final String contentType;
+        private final int level;
+        private final Template approverGroup;
+        private final Template escalationTarget;
+        private final int order;
+
+        private Rule(String[] segments, String contentType, int level, Template approverGroup,
+                     Template escalationTarget, int order) {
+            this.segments = segments;
+            this.contentType = contentType;
+            this.level = level;
+            this.approverGroup = approverGroup;
+            this.escalationTarget = escalationTarget;
+            this.order = order;
+        }
+
+        private static Rule parse(String line, int order) {
+            String[] fields = line.split("\\|", -1);
+            if (fields.length < 4 || fields.length > 5) {
+                throw new IllegalArgumentException("expected 4 or 5 fields separated by |");
+            }
+            String pattern = fields[0].trim();
+            if (!pattern.startsWith("/")) {
+                throw new IllegalArgumentException("path pattern must be absolute");
+            }
+            String contentType = fields[1].trim();
+            String level = fields[2].trim();
+            String approverGroup = fields[3].trim();
+            String escalationTarget = fields.length == 5 ? fields[4].trim() : "";
+            if (approverGroup.isEmpty()) {
+                throw new IllegalArgumentException("approver group is required");
+            }
+            try {
+                return new Rule(
+                    Arrays.stream(pattern.split("/")).filter(segment -> !segment.isEmpty()).toArray(String[]::new),
+                    contentType.isEmpty() || ANY.equals(contentType) ? null : contentType,
+                    level.isEmpty() || ANY.equals(level) ? ANY_LEVEL : Integer.parseInt(level),
+                    Template.compile(approverGroup),
+                    escalationTarget.isEmpty() ? null : Template.compile(escalationTarget),
+                    order);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("level must be a number or *");
+            }
+        }
+
+        private boolean matches(String type, int approvalLevel) {
+            return (level == ANY_LEVEL || level == approvalLevel)
+                && (contentType == null || contentType.equals(type));
+        }
+
+        /**
+         * 0 for a rule with level and content type, 3 for one with neither.
+         */
+        private int genericity() {
+            return (level == ANY_LEVEL ? 2 : 0) + (contentType == null ? 1 : 0);
+        }
+    }
+
+    /**
+     * Group name with at most one {@code {department}} placeholder, split at
+     * compile time so expansion is a single concatenation.
+     */
+    private static final class Template {
+
+        private final String prefix;
+        private final String suffix;
+
+        private Template(String prefix, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        private static Template compile(String value) {
+            int placeholder = value.indexOf(DEPARTMENT);
+            return placeholder < 0
+                ? new Template(value, null)
+                : new Template(value.substring(0, placeholder), value.substring(placeholder + DEPARTMENT.length()));
+        }
+
+        private String expand(String department) {
+            return suffix == null ? prefix : prefix + department + suffix;
+        }
+    }
+}
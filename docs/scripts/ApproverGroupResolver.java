@@ -0,0 +1,195 @@
+package com.example.core.workflows;
+
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves the approver group for a payload and approval level.
+ *
+ * The group comes from the {@link ApprovalRoutingTable}. Before it is handed
+ * to the inbox it is checked to exist and have members; otherwise the work
+ * item would sit unassigned, so the fallback group is used.
+ *
+ * Routing itself is an in-memory lookup; the payload's content type is only
+ * read when some routing rule restricts it. Verification results are cached
+ * per routed group (one entry per department and level), so routing a work
+ * item does not touch the user manager. Entries expire after a TTL and the
+ * whole cache is dropped when anything under /home/groups changes, including
+ * changes made on other cluster nodes.
+ */
+@Component(
+    service = {ApproverGroupResolver.class, ResourceChangeListener.class},
+    property = {
+        ResourceChangeListener.PATHS + "=/home/groups"
+    }
+)
+@Designate(ocd = ApproverGroupResolver.Config.class)
+public class ApproverGroupResolver implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApproverGroupResolver.class);
+
+    @ObjectClassDefinition(
+        name = "Example - Approver Group Resolver",
+        description = "Resolves and verifies approver groups of approval workflows"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Cache TTL (ms)", description = "0 disables caching")
+        long cache_ttl_millis() default 300000;
+
+        @AttributeDefinition(name = "Maximum cache entries")
+        int cache_max_entries() default 1000;
+
+        @AttributeDefinition(name = "Verify groups",
+            description = "Check that the group exists and has members before routing to it")
+        boolean verify_groups() default true;
+
+        @AttributeDefinition(name = "Fallback group",
+            description = "Used when the routed group does not exist or is empty")
+        String fallback_group() default "administrators";
+    }
+
+    @Reference
+    private ApprovalRoutingTable routingTable;
+
+    // Routed group to verified group
+    private volatile TtlCache<String, String> groups;
+    private volatile boolean verifyGroups;
+    private volatile String fallbackGroup;
+
+    // Bumped on every invalidation so a lookup racing with a group change is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        verifyGroups = config.verify_groups();
+        fallbackGroup = config.fallback_group();
+        generation.incrementAndGet();
+        groups = new TtlCache<>(config.cache_ttl_millis(), config.cache_max_entries());
+    }
+
+    /**
+     * Resolve the approver group for a payload.
+     *
+     * @param resolver Resolver used to read the content type and verify the group
+     * @param payloadPath The workflow payload
+     * @param level The approval level (1-based)
+     * @return The approver group ID, never null
+     */
+    public String resolve(ResourceResolver resolver, String payloadPath, int level) {
+        String group = routingTable.getApproverGroup(payloadPath,
+            routingTable.getContentType(resolver, payloadPath), level);
+        if (!verifyGroups) {
+            return group;
+        }
+
+        String verified = groups.get(group);
+        if (verified != null) {
+            return verified;
+        }
+
+        long lookupGeneration = generation.get();
+        verified = verify(resolver, group);
+        if (generation.get() == lookupGeneration) {
+            groups.put(group, verified);
+        }
+        return verified;
+    }
+
+    /**
+     * @return The group if it exists and has members, otherwise the fallback group
+     */
+    private String verify(ResourceResolver resolver, String group) {
+        lookups.increment();
+        UserManager userManager = resolver != null ? resolver.adaptTo(UserManager.class) : null;
+        if (userManager == null) {
+            // Cannot verify; route as configured rather than to the fallback
+            return group;
+        }
+        try {
+            Authorizable authorizable = userManager.getAuthorizable(group);
+            if (authorizable != null && authorizable.isGroup()
+                    && ((Group) authorizable).getMembers().hasNext()) {
+                return group;
+            }
+            fallbacks.increment();
+            LOG.warn("Approver group {} does not exist or has no members, using {}", group, fallbackGroup);
+            return fallbackGroup;
+        } catch (RepositoryException e) {
+            LOG.warn("Failed to verify approver group {}, using it unverified", group, e);
+            return group;
+        }
+    }
+
+    @Override
+    public void onChange(List<ResourceChange> changes) {
+        // Group node names need not match group IDs, and membership changes
+        // touch the group node only; any change drops the whole (small) cache
+        clear();
+        invalidations.increment();
+        LOG.debug("Approver group cache invalidated by {} change(s) under /home/groups", changes.size());
+    }
+
+    /**
+     * Drop every cached resolution.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        groups.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    public int getCacheSize() {
+        return groups.size();
+    }
+
+    public long getHitCount() {
+        return groups.getHitCount();
+    }
+
+    public long getMissCount() {
+        return groups.getMissCount();
+    }
+
+    /**
+     * @return Number of user manager lookups (cache misses with verification enabled)
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.core.workflows;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of a DAM asset for one process execution.
+ *
+ * Asset processes used to reach the same data again and again: adapting to
+ * {@link Asset}, looking up {@code jcr:content/metadata}, reading a metadata
+ * property twice, fetching the original and then listing all renditions. A
+ * snapshot reads each of these on first use and keeps the result, so each
+ * node and property is read at most once per execution, and nothing is read
+ * that the process never uses.
+ *
+ * Values are not refreshed: writes made during the execution are not seen
+ * through the snapshot. Create one per execute() and do not keep it longer;
+ * like the resolver it reads through, it is for the workflow thread only.
+ */
+public final class AssetSnapshot {
+
+    private static final String METADATA = "jcr:content/metadata";
+
+    // Marks a memoized null, so absent values are not looked up again
+    private static final Object NONE = new Object();
+
+    private final Resource resource;
+
+    private Object asset;
+    private Object metadataResource;
+    private ValueMap metadata;
+    private Object mimeType;
+    private Object original;
+    private List<Rendition> renditions;
+    private Map<String, Object> metadataValues;
+
+    private AssetSnapshot(Resource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * @param resolver The resolver of the execution
+     * @param path The asset path (usually the payload)
+     * @return The snapshot, or null if there is no resource at the path
+     */
+    public static AssetSnapshot of(ResourceResolver resolver, String path) {
+        Resource resource = resolver.getResource(path);
+        return resource != null ? new AssetSnapshot(resource) : null;
+    }
+
+    public Resource getResource() {
+        return resource;
+    }
+
+    public String getPath() {
+        return resource.getPath();
+    }
+
+    public String getName() {
+        return resource.getName();
+    }
+
+    /**
+     * @return The adapted asset, or null if the resource is not a DAM asset
+     */
+    public Asset getAsset() {
+        if (asset == null) {
+            Asset adapted = resource.adaptTo(Asset.class);
+            asset = adapted != null ? adapted : NONE;
+        }
+        return asset != NONE ? (Asset) asset : null;
+    }
+
+    /**
+     * @return The {@code jcr:content/metadata} resource, or null if missing
+     */
+    public Resource getMetadataResource() {
+        if (metadataResource == null) {
+            Resource child = resource.getChild(METADATA);
+            metadataResource = child != null ? child : NONE;
+        }
+        return metadataResource != NONE ? (Resource) metadataResource : null;
+    }
+
+    /**
+     * @return The value of a metadata property (e.g. {@code dc:title}), or null
+     */
+    public Object getMetadata(String name) {
+        if (metadataValues == null) {
+            metadataValues = new HashMap<>();
+        }
+        Object value = metadataValues.get(name);
+        if (value == null) {
+            ValueMap values = getMetadataValues();
+            Object read = values != null ? values.get(name) : null;
+            value = read != null ? read : NONE;
+            metadataValues.put(name, value);
+        }
+        return value != NONE ? value : null;
+    }
+
+    /**
+     * @return A metadata property as a string, or null
+     */
+    public String getMetadataValue(String name) {
+        Object value = getMetadata(name);
+        return value instanceof Object[] array ? (array.length > 0 ? String.valueOf(array[0]) : null)
+            : value != null ? value.toString() : null;
+    }
+
+    public String getMimeType() {
+        if (mimeType == null) {
+            Asset adapted = getAsset();
+            String type = adapted != null ? adapted.getMimeType() : null;
+            mimeType = type != null ? type : NONE;
+        }
+        return mimeType != NONE ? (String) mimeType : null;
+    }
+
+    /**
+     * @return The original rendition, taken from the rendition list if that was already read
+     */
+    public Rendition getOriginal() {
+        if (original == null) {
+            Rendition found = null;
+            if (renditions != null) {
+                for (Rendition rendition : renditions) {
+                    if ("original".equals(rendition.getName())) {
+                        found = rendition;
+                        break;
+                    }
+                }
+            } else {
+                Asset adapted = getAsset();
+                found = adapted != null ? adapted.getOriginal() : null;
+            }
+            original = found != null ? found : NONE;
+        }
+        return original != NONE ? (Rendition) original : null;
+    }
+
+    /**
+     * @return All renditions, read once
+     */
+    public List<Rendition> getRenditions() {
+        if (renditions == null) {
+            Asset adapted = getAsset();
+            renditions = adapted != null
+                ? Collections.unmodifiableList(adapted.getRenditions()) : Collections.emptyList();
+        }
+        return renditions;
+    }
+
+    private ValueMap getMetadataValues() {
+        if (metadata == null) {
+            Resource metadataNode = getMetadataResource();
+            metadata = metadataNode != null ? metadataNode.getValueMap() : null;
+        }
+        return metadata;
+    }
+}
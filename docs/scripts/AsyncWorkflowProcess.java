@@ -0,0 +1,181 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.exec.Route;
+import com.adobe.granite.workflow.exec.WorkItem;
+import com.adobe.granite.workflow.exec.WorkflowProcess;
+import com.adobe.granite.workflow.metadata.MetaDataMap;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for process steps whose work runs outside the workflow engine.
+ *
+ * execute() only queues a Sling job carrying the work item ID, the payload and
+ * the step arguments, then returns: the engine thread is free again at once,
+ * instead of being blocked for the duration of a slow call. The job consumer
+ * (the same component) does the work on a Sling job queue thread and then
+ * completes the work item, which advances the workflow. Jobs are persisted,
+ * so work queued before a restart still runs and advances its workflow.
+ *
+ * Requirements:
+ * - Register the subclass as both {@link WorkflowProcess} and
+ *   {@link JobConsumer}, with its topic in {@link JobConsumer#PROPERTY_TOPICS}.
+ * - Clear "Handler Advance" on the process step, so the engine waits for the
+ *   job to complete the work item. With it set, the engine advances at once
+ *   and the job, finding the work item gone, does nothing.
+ * - Jobs are delivered at least once; {@link #runAsync} may run again for the
+ *   same work item after a failure or restart and must tolerate that.
+ *
+ * When the work fails, the job is retried as the job queue configures. After
+ * the last retry the error is stored in the workflow metadata under
+ * {@value #ASYNC_ERROR}. The work item then stays on the step for an
+ * administrator, unless the step argument {@code ADVANCE_ON_FAILURE:true}
+ * lets the workflow continue.
+ */
+public abstract class AsyncWorkflowProcess implements WorkflowProcess, JobConsumer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncWorkflowProcess.class);
+
+    public static final String PROP_WORK_ITEM_ID = "workItemId";
+    public static final String PROP_WORKFLOW_ID = "workflowId";
+    public static final String PROP_PAYLOAD = "payload";
+    public static final String PROP_PROCESS_ARGS = "processArgs";
+
+    public static final String ASYNC_ERROR = "asyncStepError";
+
+    private static final String AUTO_ADVANCE = "PROCESS_AUTO_ADVANCE";
+    private static final String ADVANCE_ON_FAILURE = "ADVANCE_ON_FAILURE";
+
+    /**
+     * @return Topic of this step's jobs; also the component's job.topics
+     */
+    protected abstract String getJobTopic();
+
+    protected abstract JobManager getJobManager();
+
+    /**
+     * @return Pool the work items are completed through
+     */
+    protected abstract WorkflowSessionPool getSessionPool();
+
+    /**
+     * Do the step's work. Runs on a job thread without a session; lease one
+     * from the pool if repository access is needed.
+     *
+     * @param payload The workflow payload
+     * @param processArgs The step's arguments
+     * @return Values to add to the workflow metadata, may be empty
+     * @throws Exception to fail the job (and retry it, if retries are left)
+     */
+    protected abstract Map<String, Object> runAsync(String payload, ProcessArgs processArgs) throws Exception;
+
+    @Override
+    public final void execute(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap)
+            throws WorkflowException {
+        if (metaDataMap.get(AUTO_ADVANCE, false)) {
+            LOG.warn("Handler Advance is set on the step of {}; job {} will find nothing to do",
+                workItem.getWorkflow().getId(), getJobTopic());
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(PROP_WORK_ITEM_ID, workItem.getId());
+        properties.put(PROP_WORKFLOW_ID, workItem.getWorkflow().getId());
+        properties.put(PROP_PAYLOAD, workItem.getWorkflowData().getPayload().toString());
+        properties.put(PROP_PROCESS_ARGS, ProcessArgs.of(metaDataMap).raw());
+
+        Job job = getJobManager().addJob(getJobTopic(), properties);
+        if (job == null) {
+            // Nothing will complete the work item; let the engine retry the step
+            throw new WorkflowException("Could not queue job " + getJobTopic() + " for " + workItem.getId());
+        }
+        LOG.debug("Queued job {} for work item {}", job.getId(), workItem.getId());
+    }
+
+    @Override
+    public final JobResult process(Job job) {
+        String workItemId = job.getProperty(PROP_WORK_ITEM_ID, String.class);
+        String payload = job.getProperty(PROP_PAYLOAD, String.class);
+        ProcessArgs processArgs = ProcessArgs.parse(job.getProperty(PROP_PROCESS_ARGS, String.class));
+        if (workItemId == null || payload == null) {
+            LOG.error("Job {} has no work item or payload, dropping it", job.getId());
+            return JobResult.CANCEL;
+        }
+
+        try {
+            if (!isWaiting(workItemId)) {
+                // Completed by an earlier delivery of this job, or the workflow was terminated
+                LOG.debug("Work item {} is no longer waiting, skipping job {}", workItemId, job.getId());
+                return JobResult.OK;
+            }
+        } catch (LoginException | WorkflowException e) {
+            LOG.warn("Could not look up work item {}, retrying", workItemId, e);
+            return JobResult.FAILED;
+        }
+
+        Map<String, Object> results;
+        try {
+            results = runAsync(payload, processArgs);
+        } catch (Exception e) {
+            boolean lastAttempt = job.getRetryCount() >= job.getNumberOfRetries();
+            if (!lastAttempt) {
+                LOG.warn("Async step {} failed for {} (attempt {}), retrying",
+                    getJobTopic(), payload, job.getRetryCount() + 1, e);
+                return JobResult.FAILED;
+            }
+            LOG.error("Async step {} failed for {} after {} attempt(s)",
+                getJobTopic(), payload, job.getRetryCount() + 1, e);
+            Map<String, Object> error = Collections.singletonMap(ASYNC_ERROR, String.valueOf(e.getMessage()));
+            return complete(workItemId, error, processArgs.getBoolean(ADVANCE_ON_FAILURE, false));
+        }
+        return complete(workItemId, results != null ? results : Collections.emptyMap(), true);
+    }
+
+    private boolean isWaiting(String workItemId) throws LoginException, WorkflowException {
+        try (WorkflowSessionPool.Lease lease = getSessionPool().lease()) {
+            WorkItem workItem = lease.getWorkflowSession().getWorkItem(workItemId);
+            return workItem != null && workItem.getWorkflow().isActive();
+        }
+    }
+
+    /**
+     * Store the results and, if requested, advance the workflow along the first route.
+     */
+    private JobResult complete(String workItemId, Map<String, Object> results, boolean advance) {
+        try (WorkflowSessionPool.Lease lease = getSessionPool().lease()) {
+            WorkflowSession workflowSession = lease.getWorkflowSession();
+            WorkItem workItem = workflowSession.getWorkItem(workItemId);
+            if (workItem == null || !workItem.getWorkflow().isActive()) {
+                return JobResult.OK;
+            }
+            workItem.getWorkflowData().getMetaDataMap().putAll(results);
+            if (!advance) {
+                // Keep the item on the step, but save the error for the administrator
+                workflowSession.updateWorkflowData(workItem.getWorkflow(), workItem.getWorkflowData());
+                return JobResult.CANCEL;
+            }
+            List<Route> routes = workflowSession.getRoutes(workItem, false);
+            if (routes.isEmpty()) {
+                LOG.error("No route to advance work item {}", workItemId);
+                return JobResult.CANCEL;
+            }
+            workflowSession.complete(workItem, routes.get(0));
+            LOG.debug("Completed work item {}", workItemId);
+            return JobResult.OK;
+        } catch (LoginException | WorkflowException e) {
+            // The work is repeated on retry; runAsync is required to tolerate that
+            LOG.warn("Could not complete work item {}, retrying", workItemId, e);
+            return JobResult.FAILED;
+        }
+    }
+}
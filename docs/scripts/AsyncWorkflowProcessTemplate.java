@@ -0,0 +1,84 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.exec.WorkflowProcess;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Asynchronous workflow process template for AEM as a Cloud Service.
+ * Use it instead of BasicWorkflowProcessTemplate when the step calls slow
+ * external systems: the work runs as a Sling job, not on the engine thread.
+ *
+ * In the workflow model, clear "Handler Advance" on the process step.
+ *
+ * Optional job queue configuration (parallel, with retries):
+ * <pre>
+ * PID: org.apache.sling.event.jobs.QueueConfiguration~asyncworkflow
+ * queue.name = "Async Workflow Steps"
+ * queue.topics = ["com/example/workflow/async-process"]
+ * queue.type = "PARALLEL"
+ * queue.maxparallel = 8
+ * queue.retries = 3
+ * </pre>
+ */
+@Component(
+    service = {WorkflowProcess.class, JobConsumer.class},
+    property = {
+        "process.label=Async Workflow Process Template",
+        JobConsumer.PROPERTY_TOPICS + "=" + AsyncWorkflowProcessTemplate.TOPIC
+    }
+)
+public class AsyncWorkflowProcessTemplate extends AsyncWorkflowProcess {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncWorkflowProcessTemplate.class);
+
+    public static final String TOPIC = "com/example/workflow/async-process";
+
+    @Reference
+    private JobManager jobManager;
+
+    @Reference
+    private WorkflowSessionPool sessionPool;
+
+    @Override
+    protected String getJobTopic() {
+        return TOPIC;
+    }
+
+    @Override
+    protected JobManager getJobManager() {
+        return jobManager;
+    }
+
+    @Override
+    protected WorkflowSessionPool getSessionPool() {
+        return sessionPool;
+    }
+
+    /**
+     * Implement your long-running processing logic here.
+     *
+     * @param payload The workflow payload path
+     * @param processArgs Arguments passed to the process step
+     * @return Data for the next workflow steps
+     */
+    @Override
+    protected Map<String, Object> runAsync(String payload, ProcessArgs processArgs) throws Exception {
+        // TODO: Add your custom implementation, e.g. call an external service.
+        // For repository access, lease a session:
+        //   try (WorkflowSessionPool.Lease lease = sessionPool.lease()) { ... }
+        LOG.info("Performing async processing on: {}", payload);
+
+        Map<String, Object> results = new HashMap<>();
+        results.put("processedBy", getClass().getSimpleName());
+        results.put("processedAt", System.currentTimeMillis());
+        return results;
+    }
+}
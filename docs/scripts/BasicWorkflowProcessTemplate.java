@@ -8,6 +8,7 @@ import com.adobe.granite.workflow.metadata.MetaDataMap;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,12 +26,19 @@ public class BasicWorkflowProcessTemplate implements WorkflowProcess {
     
     private static final Logger LOG = LoggerFactory.getLogger(BasicWorkflowProcessTemplate.class);
     
+    // Step name in WorkflowMetrics
+    private static final String METRICS_STEP = "basicWorkflowProcess";
+    
+    @Reference
+    private WorkflowMetrics metrics;
+    
     @Override
     public void execute(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap) 
             throws WorkflowException {
         
         LOG.info("Starting workflow process execution");
         
+        WorkflowMetrics.Execution execution = metrics.start(METRICS_STEP);
         try {
             // 1. Get ResourceResolver from WorkflowSession
             ResourceResolver resolver = workflowSession.adaptTo(ResourceResolver.class);
@@ -48,9 +56,10 @@ public class BasicWorkflowProcessTemplate implements WorkflowProcess {
                 LOG.warn("Resource not found at path: {}", payloadPath);
                 return;
             }
+            execution.phase(WorkflowMetrics.Phase.RESOLVE);
             
             // 4. Read process arguments (if any)
-            String processArgs = metaDataMap.get("PROCESS_ARGS", String.class);
+            ProcessArgs processArgs = ProcessArgs.of(metaDataMap); // parsed once per step configuration
             LOG.debug("Process arguments: {}", processArgs);
             
             // 5. Access workflow metadata (shared across all steps)
@@ -58,6 +67,7 @@ public class BasicWorkflowProcessTemplate implements WorkflowProcess {
             
             // 6. TODO: Implement your custom workflow logic here
             performCustomProcessing(resource, resolver, processArgs);
+            execution.phase(WorkflowMetrics.Phase.PROCESS);
             
             // 7. Store data for next workflow step (if needed)
             workflowMetadata.put("processedBy", this.getClass().getSimpleName());
@@ -67,12 +77,17 @@ public class BasicWorkflowProcessTemplate implements WorkflowProcess {
             
         } catch (WorkflowException e) {
             // Re-throw workflow exceptions
+            execution.fail();
             throw e;
             
         } catch (Exception e) {
             LOG.error("Error in workflow process", e);
+            execution.fail();
             // Throwing WorkflowException will cause workflow to retry
             throw new WorkflowException("Failed to process workflow", e);
+            
+        } finally {
+            execution.end();
         }
     }
     
@@ -83,7 +98,7 @@ public class BasicWorkflowProcessTemplate implements WorkflowProcess {
      * @param resolver The resource resolver
      * @param processArgs Arguments passed to the process step
      */
-    private void performCustomProcessing(Resource resource, ResourceResolver resolver, String processArgs) {
+    private void performCustomProcessing(Resource resource, ResourceResolver resolver, ProcessArgs processArgs) {
         // TODO: Add your custom implementation
         LOG.info("Performing custom processing on resource: {}", resource.getPath());
     }
@@ -0,0 +1,85 @@
+package com.example.core.workflows;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-payload outcome of a bulk workflow start.
+ *
+ * Every submitted path ends up in exactly one of the two maps: the started
+ * workflow ID, or the reason it could not be started. Repeated paths are
+ * dropped before the start, so each path appears once.
+ *
+ * Iteration order of each map is the order outcomes were recorded. That is
+ * submission order for {@link BulkWorkflowStarter#startAll}. For
+ * {@link BulkWorkflowStarter#startAllParallel} it is completion order: chunks
+ * finish in any order, although paths within a chunk stay in submission order.
+ */
+public class BulkStartResult {
+
+    private final String workflowModelPath;
+    private final Map<String, String> workflowIds = new LinkedHashMap<>();
+    private final Map<String, String> failures = new LinkedHashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+    private long finishedAt;
+
+    public BulkStartResult(String workflowModelPath) {
+        this.workflowModelPath = workflowModelPath;
+    }
+
+    synchronized void started(String resourcePath, String workflowId) {
+        workflowIds.put(resourcePath, workflowId);
+    }
+
+    synchronized void failed(String resourcePath, String reason) {
+        // A chunk that fails part-way only fails the paths that were not started
+        if (!workflowIds.containsKey(resourcePath)) {
+            failures.put(resourcePath, reason);
+        }
+    }
+
+    synchronized void finish() {
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public String getWorkflowModelPath() {
+        return workflowModelPath;
+    }
+
+    /**
+     * @return Payload path to started workflow ID
+     */
+    public synchronized Map<String, String> getWorkflowIds() {
+        return Collections.unmodifiableMap(workflowIds);
+    }
+
+    /**
+     * @return Payload path to failure reason
+     */
+    public synchronized Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public synchronized int getSuccessCount() {
+        return workflowIds.size();
+    }
+
+    public synchronized int getFailureCount() {
+        return failures.size();
+    }
+
+    public synchronized int getTotalCount() {
+        return workflowIds.size() + failures.size();
+    }
+
+    public synchronized long getDurationMillis() {
+        return (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkStartResult[model=%s, started=%d, failed=%d, durationMs=%d]",
+            workflowModelPath, getSuccessCount(), getFailureCount(), getDurationMillis());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.core.workflows;
+
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Runs a bulk workflow termination as a Sling job.
+ *
+ * Job properties select the instances: either {@value #PROP_WORKFLOW_IDS}, or
+ * {@value #PROP_MODEL_ID} / {@value #PROP_STATE} / {@value #PROP_OLDER_THAN_MILLIS}.
+ * Progress shows up in the job's progress and log. A job stopped by an
+ * operator ({@code JobManager.stopJobById}) is cancelled and its checkpoint
+ * removed. A job interrupted because this executor went away (shutdown,
+ * restart, its terminator unbound) fails and is retried by the queue.
+ * Because terminations are idempotent the retry simply runs again: an ID list
+ * resumes from the offset checkpointed under the job's ID, and a query no
+ * longer matches the instances that were already terminated.
+ *
+ * Queue configuration (ordered, no parallelism) keeps two terminations from
+ * competing:
+ * <pre>
+ * PID: org.apache.sling.event.jobs.QueueConfiguration~bulkterminate
+ * queue.name = "Bulk Workflow Termination"
+ * queue.topics = ["com/example/workflow/bulk-terminate"]
+ * queue.type = "ORDERED"
+ * queue.retries = 3
+ * </pre>
+ */
+@Component(
+    service = JobExecutor.class,
+    property = {
+        JobExecutor.PROPERTY_TOPICS + "=" + BulkTerminateJobExecutor.TOPIC
+    }
+)
+public class BulkTerminateJobExecutor implements JobExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkTerminateJobExecutor.class);
+
+    public static final String TOPIC = "com/example/workflow/bulk-terminate";
+
+    public static final String PROP_WORKFLOW_IDS = "workflowIds";
+    public static final String PROP_MODEL_ID = "modelId";
+    public static final String PROP_STATE = "state";
+    public static final String PROP_OLDER_THAN_MILLIS = "olderThanMillis";
+
+    @Reference
+    private BulkWorkflowTerminator terminator;
+
+    // Set on shutdown or unbind, when Sling stops running jobs as well
+    private volatile boolean deactivating;
+
+    @Deactivate
+    protected void deactivate() {
+        deactivating = true;
+    }
+
+    @Override
+    public JobExecutionResult process(Job job, JobExecutionContext context) {
+        String[] workflowIds = job.getProperty(PROP_WORKFLOW_IDS, String[].class);
+
+        BulkTerminateResult result;
+        if (workflowIds != null) {
+            context.initProgress(workflowIds.length, -1);
+            result = terminator.terminateAll(Arrays.asList(workflowIds), job.getId(), new JobProgress(context));
+        } else {
+            BulkWorkflowTerminator.Criteria criteria = new BulkWorkflowTerminator.Criteria(
+                job.getProperty(PROP_MODEL_ID, String.class),
+                job.getProperty(PROP_STATE, String.class),
+                job.getProperty(PROP_OLDER_THAN_MILLIS, 0L));
+            context.log("Terminating instances matching {0}", criteria);
+            result = terminator.terminateMatching(criteria, new JobProgress(context));
+        }
+
+        LOG.info("Bulk termination job {} done: {}", job.getId(), result);
+        if (result.isStopped()) {
+            if (deactivating) {
+                // Not cancelled: the retry picks the run up where it stopped
+                return context.result().message("Interrupted: " + result).failed();
+            }
+            // Stopped by an operator: no retry, so nothing will resume from the checkpoint
+            if (workflowIds != null) {
+                terminator.clearCheckpoint(job.getId());
+            }
+            return context.result().message("Stopped: " + result).cancelled();
+        }
+        if (result.getFailureCount() > 0) {
+            // Retrying is safe - terminated instances are skipped on the next run
+            return context.result().message(result.toString()).failed();
+        }
+        return context.result().message(result.toString()).succeeded();
+    }
+
+    /**
+     * Forwards chunk progress to the job and honours stop requests.
+     */
+    private static final class JobProgress implements BulkWorkflowTerminator.ProgressListener {
+
+        private final JobExecutionContext context;
+        private int reported;
+
+        private JobProgress(JobExecutionContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public void onProgress(BulkTerminateResult result, int total) {
+            int processed = result.getProcessedCount();
+            if (total >= 0) {
+                context.incrementProgressCount(processed - reported);
+            }
+            reported = processed;
+            context.log("Processed {0} instances: {1} terminated, {2} skipped, {3} failed",
+                processed, result.getTerminatedCount(), result.getSkippedCount(), result.getFailureCount());
+        }
+
+        @Override
+        public void onResume(int offset) {
+            context.incrementProgressCount(offset);
+            context.log("Resuming after {0} instances processed by an earlier attempt", offset);
+        }
+
+        @Override
+        public boolean isStopRequested() {
+            return context.isStopped();
+        }
+    }
+}
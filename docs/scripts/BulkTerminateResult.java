@@ -0,0 +1,91 @@
+package com.example.core.workflows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-instance outcome of a bulk workflow termination.
+ *
+ * Every processed workflow ID ends up in exactly one bucket: terminated,
+ * skipped (not found or no longer running), or failed with a reason.
+ */
+public class BulkTerminateResult {
+
+    private final List<String> terminated = new ArrayList<>();
+    private final Map<String, String> skipped = new LinkedHashMap<>();
+    private final Map<String, String> failures = new LinkedHashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+    private long finishedAt;
+    private boolean stopped;
+
+    void terminated(String workflowId) {
+        terminated.add(workflowId);
+    }
+
+    void skipped(String workflowId, String reason) {
+        skipped.put(workflowId, reason);
+    }
+
+    void failed(String workflowId, String reason) {
+        failures.put(workflowId, reason);
+    }
+
+    void finish(boolean stopped) {
+        this.stopped = stopped;
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public List<String> getTerminated() {
+        return Collections.unmodifiableList(terminated);
+    }
+
+    /**
+     * @return Workflow ID to reason it was not terminated (not found, already finished)
+     */
+    public Map<String, String> getSkipped() {
+        return Collections.unmodifiableMap(skipped);
+    }
+
+    /**
+     * @return Workflow ID to failure reason
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public int getTerminatedCount() {
+        return terminated.size();
+    }
+
+    public int getSkippedCount() {
+        return skipped.size();
+    }
+
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    public int getProcessedCount() {
+        return terminated.size() + skipped.size() + failures.size();
+    }
+
+    /**
+     * @return true if the run was stopped before all instances were processed
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public long getDurationMillis() {
+        return (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkTerminateResult[terminated=%d, skipped=%d, failed=%d, stopped=%s, durationMs=%d]",
+            getTerminatedCount(), getSkippedCount(), getFailureCount(), stopped, getDurationMillis());
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.exec.Workflow;
+import com.adobe.granite.workflow.exec.WorkflowData;
+import com.adobe.granite.workflow.model.WorkflowModel;
+import org.apache.sling.api.resource.LoginException;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk workflow start engine.
+ *
+ * Resolves the workflow model once, then starts workflows in chunks. Each
+ * chunk runs under a single leased session, and the session is refreshed and
+ * handed back to the pool between chunks so tens of thousands of payloads do
+ * not accumulate in one long-lived session.
+ *
+ * Failures are isolated per payload and reported in the {@link BulkStartResult}.
+ * Every start acquires a token from {@link WorkflowStartThrottle}. The first
+ * token of a chunk is awaited before the session is leased; when the throttle
+ * runs dry mid-chunk the session is refreshed and handed back before waiting
+ * again, so a throttled run does not sit on pooled sessions. A payload that
+ * already has an instance of the model running reports that instance's ID
+ * instead of starting a duplicate (see {@link InFlightWorkflowIndex}) and
+ * gives its token back.
+ *
+ * The parallel mode fans chunks out to virtual threads through a
+ * {@link ChunkedWorkQueue}, each worker leasing its own session. The caller
+ * blocks instead of buffering the whole payload list, a chunk that fails
+ * unexpectedly is reported without stopping its worker, and workers pause
+ * while the number of running workflow instances is above the configured
+ * ceiling.
+ */
+@Component(service = BulkWorkflowStarter.class)
+@Designate(ocd = BulkWorkflowStarter.Config.class)
+public class BulkWorkflowStarter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkWorkflowStarter.class);
+
+    @ObjectClassDefinition(
+        name = "Example - Bulk Workflow Starter",
+        description = "Chunked bulk start of workflows over pooled sessions"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Chunk size", description = "Payloads started per leased session")
+        int chunk_size() default 500;
+
+        @AttributeDefinition(name = "Parallelism",
+            description = "Worker threads in parallel mode (capped at the session pool size less the reserve)")
+        int parallelism() default 4;
+
+        @AttributeDefinition(name = "Reserved sessions",
+            description = "Pooled sessions parallel mode leaves free for interactive starts and other callers")
+        int reserved_sessions() default 2;
+
+        @AttributeDefinition(name = "Queue capacity", description = "Chunks buffered ahead of the workers")
+        int queue_capacity() default 8;
+
+        @AttributeDefinition(name = "Maximum running workflows",
+            description = "Workers pause while more instances than this are RUNNING (0 disables the check)")
+        int max_running_workflows() default 2000;
+
+        @AttributeDefinition(name = "Backpressure poll interval (ms)")
+        long backpressure_poll_millis() default 2000;
+    }
+
+    @Reference
+    private WorkflowSessionPool sessionPool;
+
+    @Reference
+    private WorkflowEngineLoadProbe loadProbe;
+
+    @Reference
+    private WorkflowStartThrottle startThrottle;
+
+    @Reference
+    private WorkflowModelCache modelCache;
+
+    @Reference
+    private InFlightWorkflowIndex inFlightIndex;
+
+    private int chunkSize;
+    private int parallelism;
+    private int reservedSessions;
+    private int queueCapacity;
+    private int maxRunningWorkflows;
+    private long backpressurePollMillis;
+
+    @Activate
+    protected void activate(Config config) {
+        chunkSize = Math.max(1, config.chunk_size());
+        parallelism = Math.max(1, config.parallelism());
+        reservedSessions = Math.max(0, config.reserved_sessions());
+        queueCapacity = Math.max(1, config.queue_capacity());
+        maxRunningWorkflows = Math.max(0, config.max_running_workflows());
+        backpressurePollMillis = Math.max(100, config.backpressure_poll_millis());
+    }
+
+    /**
+     * Start a workflow for every path using the configured chunk size.
+     *
+     * @param resourcePaths Payload paths
+     * @param workflowModelPath The workflow model to use
+     * @param metadata Optional metadata passed to every workflow (may be null)
+     * @return Per-path results, in submission order
+     */
+    public BulkStartResult startAll(List<String> resourcePaths, String workflowModelPath,
+                                    Map<String, Object> metadata) {
+        return startAll(resourcePaths, workflowModelPath, metadata, chunkSize);
+    }
+
+    /**
+     * Start a workflow for every path, leasing one session per chunk.
+     *
+     * @param resourcePaths Payload paths
+     * @param workflowModelPath The workflow model to use
+     * @param metadata Optional metadata passed to every workflow (may be null)
+     * @param chunkSize Number of payloads started per leased session
+     * @return Per-path results, in submission order
+     */
+    public BulkStartResult startAll(List<String> resourcePaths, String workflowModelPath,
+                                    Map<String, Object> metadata, int chunkSize) {
+        BulkStartResult result = new BulkStartResult(workflowModelPath);
+        List<String> paths = distinct(resourcePaths);
+        int total = paths.size();
+        int size = Math.max(1, chunkSize);
+        LOG.info("Bulk starting {} workflows of {} in chunks of {}", total, workflowModelPath, size);
+
+        WorkflowModel workflowModel = resolveModel(workflowModelPath, paths, result);
+        if (workflowModel == null) {
+            return result;
+        }
+
+        for (int from = 0; from < total; from += size) {
+            int to = Math.min(from + size, total);
+            startChunk(workflowModel, paths.subList(from, to), metadata, result);
+            LOG.info("Bulk start progress for {}: {}/{} ({} failed)",
+                workflowModelPath, to, total, result.getFailureCount());
+        }
+
+        result.finish();
+        LOG.info("Bulk start finished: {}", result);
+        return result;
+    }
+
+    /**
+     * Start a workflow for every path on the configured number of virtual threads.
+     *
+     * @param resourcePaths Payload paths
+     * @param workflowModelPath The workflow model to use
+     * @param metadata Optional metadata passed to every workflow (may be null)
+     * @return Per-path results, in completion order
+     */
+    public BulkStartResult startAllParallel(List<String> resourcePaths, String workflowModelPath,
+                                            Map<String, Object> metadata) {
+        return startAllParallel(resourcePaths, workflowModelPath, metadata, parallelism);
+    }
+
+    /**
+     * Start a workflow for every path on up to {@code parallelism} virtual threads.
+     * Each worker leases its own session; the calling thread blocks while the
+     * chunk queue is full.
+     *
+     * @param resourcePaths Payload paths
+     * @param workflowModelPath The workflow model to use
+     * @param metadata Optional metadata passed to every workflow (may be null)
+     * @param parallelism Number of worker threads
+     * @return Per-path results, in completion order
+     */
+    public BulkStartResult startAllParallel(List<String> resourcePaths, String workflowModelPath,
+                                            Map<String, Object> metadata, int parallelism) {
+        BulkStartResult result = new BulkStartResult(workflowModelPath);
+        List<String> paths = distinct(resourcePaths);
+        // Leave part of the pool free so interactive starts are not starved for the length of the run
+        int workers = ChunkedWorkQueue.workerCount(parallelism, sessionPool.getMaxSize(), reservedSessions);
+        LOG.info("Bulk starting {} workflows of {} on {} workers in chunks of {}",
+            paths.size(), workflowModelPath, workers, chunkSize);
+
+        WorkflowModel workflowModel = resolveModel(workflowModelPath, paths, result);
+        if (workflowModel == null) {
+            return result;
+        }
+
+        ChunkedWorkQueue.run(paths, chunkSize, workers, queueCapacity, "bulk-workflow-start-",
+            () -> chunk -> {
+                awaitEngineCapacity();
+                startChunk(workflowModel, chunk, metadata, result);
+            },
+            (unprocessed, reason) -> failAll(result, unprocessed, reason));
+
+        result.finish();
+        LOG.info("Parallel bulk start finished: {}", result);
+        return result;
+    }
+
+    /**
+     * Block while the workflow engine has more running instances than allowed.
+     */
+    private void awaitEngineCapacity() throws InterruptedException {
+        if (maxRunningWorkflows == 0) {
+            return;
+        }
+        int running;
+        while ((running = loadProbe.getRunningWorkflowCount()) >= maxRunningWorkflows) {
+            LOG.debug("Backing off: {} running workflows (limit {})", running, maxRunningWorkflows);
+            TimeUnit.MILLISECONDS.sleep(backpressurePollMillis);
+        }
+    }
+
+    /**
+     * Resolve the model once for the whole run. On failure every path is
+     * reported as failed and null is returned.
+     */
+    private WorkflowModel resolveModel(String workflowModelPath, List<String> resourcePaths,
+                                       BulkStartResult result) {
+        WorkflowModel workflowModel = null;
+        String failure;
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            workflowModel = modelCache.getModel(lease.getWorkflowSession(), workflowModelPath);
+            failure = "Workflow model not found";
+        } catch (LoginException | WorkflowException e) {
+            LOG.error("Failed to resolve workflow model: {}", workflowModelPath, e);
+            failure = "Workflow model could not be resolved: " + e.getMessage();
+        }
+        if (workflowModel == null) {
+            LOG.error("{}: {}", failure, workflowModelPath);
+            failAll(result, resourcePaths, failure);
+            result.finish();
+        }
+        return workflowModel;
+    }
+
+    /**
+     * Start one chunk. A start permit is taken before each lease, and the lease is
+     * kept only while further permits are immediately available.
+     */
+    private void startChunk(WorkflowModel workflowModel, List<String> chunk, Map<String, Object> metadata,
+                            BulkStartResult result) {
+        int next = 0;
+        while (next < chunk.size()) {
+            if (!startThrottle.acquire()) {
+                result.failed(String.valueOf(chunk.get(next++)), "Throttled: no start permit within timeout");
+                continue;
+            }
+            try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+                WorkflowSession workflowSession = lease.getWorkflowSession();
+                boolean permitHeld = true;
+                while (permitHeld) {
+                    startOne(workflowSession, workflowModel, chunk.get(next++), metadata, result);
+                    permitHeld = next < chunk.size() && startThrottle.tryAcquire();
+                }
+                // Drop cached state before the session goes back to the pool
+                lease.getResourceResolver().refresh();
+            } catch (LoginException e) {
+                startThrottle.release();
+                LOG.error("No workflow session available for {} payloads", chunk.size() - next, e);
+                failAll(result, chunk.subList(next, chunk.size()), "No workflow session: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start one payload with a permit already held. The permit is released
+     * unless a workflow was actually started.
+     */
+    private void startOne(WorkflowSession workflowSession, WorkflowModel workflowModel, String resourcePath,
+                          Map<String, Object> metadata, BulkStartResult result) {
+        boolean[] attempted = new boolean[1];
+        try {
+            if (resourcePath == null || resourcePath.isEmpty()) {
+                result.failed(String.valueOf(resourcePath), "Empty payload path");
+                return;
+            }
+            String workflowId = inFlightIndex.startIfAbsent(resourcePath, result.getWorkflowModelPath(),
+                workflowSession, () -> {
+                    attempted[0] = true;
+                    return doStart(workflowSession, workflowModel, resourcePath, metadata);
+                });
+            result.started(resourcePath, workflowId);
+        } catch (WorkflowException | RuntimeException e) {
+            LOG.warn("Failed to start workflow for: {}", resourcePath, e);
+            result.failed(resourcePath, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            if (!attempted[0]) {
+                startThrottle.release();
+            }
+        }
+    }
+
+    private String doStart(WorkflowSession workflowSession, WorkflowModel workflowModel, String resourcePath,
+                           Map<String, Object> metadata) throws WorkflowException {
+        WorkflowData workflowData = workflowSession.newWorkflowData("JCR_PATH", resourcePath);
+        long startNanos = System.nanoTime();
+        Workflow workflow = workflowSession.startWorkflow(workflowModel, workflowData, metadata);
+        startThrottle.recordStart(System.nanoTime() - startNanos);
+        return workflow.getId();
+    }
+
+    /**
+     * Drop repeated paths, keeping the first occurrence. A path listed twice would
+     * otherwise be started twice or, when the second start is coalesced into the
+     * first, could be reported as both started and failed.
+     */
+    private static List<String> distinct(List<String> resourcePaths) {
+        List<String> paths = new ArrayList<>(new LinkedHashSet<>(resourcePaths));
+        if (paths.size() < resourcePaths.size()) {
+            LOG.info("Ignoring {} duplicate payload path(s)", resourcePaths.size() - paths.size());
+        }
+        return paths;
+    }
+
+    private void failAll(BulkStartResult result, List<String> paths, String reason) {
+        for (String path : paths) {
+            result.failed(String.valueOf(path), reason);
+        }
+    }
+}
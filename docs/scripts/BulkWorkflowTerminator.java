@@ -0,0 +1,385 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.exec.Workflow;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Terminates workflow instances in bulk.
+ *
+ * Instances are selected by ID list or by query (model, state, age) and
+ * processed in chunks, one leased session per chunk. Progress is reported
+ * after every chunk and a run can be stopped between chunks.
+ *
+ * Runs are idempotent: instances that are no longer running are skipped, and
+ * a query naturally stops matching instances once they are terminated. That
+ * makes a run safe to repeat, which is what lets {@link BulkTerminateJobExecutor}
+ * resume an interrupted Sling job by processing it again. An ID-list run given
+ * a checkpoint ID also records its offset under the checkpoint path after
+ * every chunk, so the repeat starts where the interrupted run stopped instead
+ * of re-reading every instance before it.
+ */
+@Component(service = BulkWorkflowTerminator.class)
+@Designate(ocd = BulkWorkflowTerminator.Config.class)
+public class BulkWorkflowTerminator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkWorkflowTerminator.class);
+
+    private static final DateTimeFormatter JCR_DATE =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").withZone(ZoneOffset.UTC);
+
+    @ObjectClassDefinition(
+        name = "Example - Bulk Workflow Terminator",
+        description = "Chunked termination of workflow instances"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Chunk size", description = "Instances terminated per leased session")
+        int chunk_size() default 200;
+
+        @AttributeDefinition(name = "Checkpoint path",
+            description = "Where interrupted ID-list runs record how far they got")
+        String checkpoint_path() default "/var/example/workflow/bulk-terminate";
+    }
+
+    /**
+     * Receives progress after every chunk and can stop the run between chunks.
+     */
+    public interface ProgressListener {
+
+        /**
+         * @param result Outcomes so far
+         * @param total Total instances to process, or -1 if not known up front (query mode)
+         */
+        void onProgress(BulkTerminateResult result, int total);
+
+        /**
+         * @param offset Instances processed by an earlier, interrupted run of the same checkpoint
+         */
+        default void onResume(int offset) {
+        }
+
+        default boolean isStopRequested() {
+            return false;
+        }
+    }
+
+    /**
+     * Selects instances to terminate. Null fields are not filtered on.
+     */
+    public static final class Criteria {
+
+        private final String modelId;
+        private final String state;
+        private final long olderThanMillis;
+
+        /**
+         * @param modelId Workflow model ID (e.g. /var/workflow/models/request_for_activation), or null for all
+         * @param state Instance state to match, e.g. RUNNING or SUSPENDED (null means RUNNING)
+         * @param olderThanMillis Only instances started more than this long ago (0 for any age)
+         */
+        public Criteria(String modelId, String state, long olderThanMillis) {
+            this.modelId = modelId;
+            this.state = state != null ? state : "RUNNING";
+            this.olderThanMillis = Math.max(0, olderThanMillis);
+        }
+
+        String toQuery() {
+            StringBuilder query = new StringBuilder(
+                "SELECT [jcr:path] FROM [cq:Workflow] AS w WHERE ISDESCENDANTNODE(w, '/var/workflow/instances')");
+            query.append(" AND w.[status] = '").append(escape(state)).append('\'');
+            if (modelId != null && !modelId.isEmpty()) {
+                query.append(" AND w.[modelId] = '").append(escape(modelId)).append('\'');
+            }
+            if (olderThanMillis > 0) {
+                String cutoff = JCR_DATE.format(Instant.ofEpochMilli(System.currentTimeMillis() - olderThanMillis));
+                query.append(" AND w.[startTime] < CAST('").append(cutoff).append("' AS DATE)");
+            }
+            return query.toString();
+        }
+
+        private static String escape(String value) {
+            return value.replace("'", "''");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("model=%s, state=%s, olderThanMs=%d", modelId, state, olderThanMillis);
+        }
+    }
+
+    @Reference
+    private WorkflowSessionPool sessionPool;
+
+    @Reference
+    private InFlightWorkflowIndex inFlightIndex;
+
+    @Reference
+    private JobManager jobManager;
+
+    private static final String PROP_OFFSET = "offset";
+
+    private int chunkSize;
+    private String checkpointPath;
+
+    @Activate
+    protected void activate(Config config) {
+        chunkSize = Math.max(1, config.chunk_size());
+        checkpointPath = config.checkpoint_path();
+    }
+
+    /**
+     * Terminate the given instances.
+     *
+     * @param workflowIds Workflow instance IDs
+     * @param listener Progress listener (may be null)
+     * @return Per-instance outcomes
+     */
+    public BulkTerminateResult terminateAll(List<String> workflowIds, ProgressListener listener) {
+        return terminateAll(workflowIds, null, listener);
+    }
+
+    /**
+     * Terminate the given instances, checkpointing after every chunk. A run
+     * with the same checkpoint ID and list resumes after the last checkpoint;
+     * the checkpoint is removed once the whole list has been processed.
+     *
+     * @param workflowIds Workflow instance IDs
+     * @param checkpointId Identifies the run across attempts, e.g. the Sling job ID (null for no checkpoint)
+     * @param listener Progress listener (may be null)
+     * @return Per-instance outcomes of this attempt
+     */
+    public BulkTerminateResult terminateAll(List<String> workflowIds, String checkpointId,
+                                            ProgressListener listener) {
+        BulkTerminateResult result = new BulkTerminateResult();
+        int total = workflowIds.size();
+        int offset = Math.min(readCheckpoint(checkpointId), total);
+        LOG.info("Bulk terminating {} workflow instances in chunks of {}", total - offset, chunkSize);
+        if (offset > 0) {
+            LOG.info("Resuming bulk termination {} after {}/{} instances", checkpointId, offset, total);
+            if (listener != null) {
+                listener.onResume(offset);
+            }
+        }
+
+        for (int from = offset; from < total; from += chunkSize) {
+            if (listener != null && listener.isStopRequested()) {
+                result.finish(true);
+                LOG.info("Bulk termination stopped: {}", result);
+                return result;
+            }
+            int to = Math.min(from + chunkSize, total);
+            List<String> chunk = workflowIds.subList(from, to);
+            try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+                for (String workflowId : chunk) {
+                    terminateOne(lease.getWorkflowSession(), workflowId, result);
+                }
+                writeCheckpoint(lease.getResourceResolver(), checkpointId, to);
+                lease.getResourceResolver().refresh();
+            } catch (LoginException e) {
+                LOG.error("No workflow session available for termination chunk", e);
+                for (String workflowId : chunk) {
+                    result.failed(workflowId, "No workflow session: " + e.getMessage());
+                }
+            }
+            if (listener != null) {
+                listener.onProgress(result, total);
+            }
+        }
+
+        clearCheckpoint(checkpointId);
+        result.finish(false);
+        LOG.info("Bulk termination finished: {}", result);
+        return result;
+    }
+
+    /**
+     * Terminate every instance matching the criteria. The query is re-run for
+     * each chunk, so instances terminated in earlier chunks drop out of it.
+     *
+     * @param criteria Instance selection
+     * @param listener Progress listener (may be null)
+     * @return Per-instance outcomes
+     */
+    public BulkTerminateResult terminateMatching(Criteria criteria, ProgressListener listener) {
+        BulkTerminateResult result = new BulkTerminateResult();
+        Set<String> attempted = new HashSet<>();
+        String query = criteria.toQuery();
+        LOG.info("Bulk terminating workflow instances matching [{}] in chunks of {}", criteria, chunkSize);
+
+        while (true) {
+            if (listener != null && listener.isStopRequested()) {
+                result.finish(true);
+                LOG.info("Bulk termination stopped: {}", result);
+                return result;
+            }
+            try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+                List<String> chunk = nextChunk(lease.getResourceResolver(), query, attempted);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                for (String workflowId : chunk) {
+                    attempted.add(workflowId);
+                    terminateOne(lease.getWorkflowSession(), workflowId, result);
+                }
+                lease.getResourceResolver().refresh();
+            } catch (LoginException e) {
+                LOG.error("No workflow session available, stopping bulk termination", e);
+                break;
+            }
+            if (listener != null) {
+                listener.onProgress(result, -1);
+            }
+        }
+
+        result.finish(false);
+        LOG.info("Bulk termination finished: {}", result);
+        return result;
+    }
+
+    /**
+     * Queue a bulk termination as a Sling job (see {@link BulkTerminateJobExecutor}).
+     *
+     * @param workflowIds Instances to terminate, or null to use the criteria
+     * @param criteria Instance selection when no IDs are given
+     * @return The job, or null if it could not be queued
+     */
+    public Job scheduleTermination(List<String> workflowIds, Criteria criteria) {
+        Map<String, Object> properties = new HashMap<>();
+        if (workflowIds != null) {
+            properties.put(BulkTerminateJobExecutor.PROP_WORKFLOW_IDS, workflowIds.toArray(new String[0]));
+        } else {
+            if (criteria.modelId != null) {
+                properties.put(BulkTerminateJobExecutor.PROP_MODEL_ID, criteria.modelId);
+            }
+            properties.put(BulkTerminateJobExecutor.PROP_STATE, criteria.state);
+            properties.put(BulkTerminateJobExecutor.PROP_OLDER_THAN_MILLIS, criteria.olderThanMillis);
+        }
+        Job job = jobManager.addJob(BulkTerminateJobExecutor.TOPIC, properties);
+        if (job != null) {
+            LOG.info("Queued bulk termination job {}", job.getId());
+        }
+        return job;
+    }
+
+    private int readCheckpoint(String checkpointId) {
+        if (checkpointId == null) {
+            return 0;
+        }
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            Resource checkpoint = lease.getResourceResolver().getResource(checkpointPath(checkpointId));
+            return checkpoint != null ? checkpoint.getValueMap().get(PROP_OFFSET, 0) : 0;
+        } catch (LoginException e) {
+            LOG.warn("Could not read checkpoint {}, starting from the beginning", checkpointId, e);
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(ResourceResolver resolver, String checkpointId, int offset) {
+        if (checkpointId == null) {
+            return;
+        }
+        try {
+            Resource checkpoint = ResourceUtil.getOrCreateResource(resolver, checkpointPath(checkpointId),
+                Collections.singletonMap("jcr:primaryType", (Object) "nt:unstructured"), null, false);
+            ModifiableValueMap values = checkpoint.adaptTo(ModifiableValueMap.class);
+            if (values != null) {
+                values.put(PROP_OFFSET, offset);
+                resolver.commit();
+            }
+        } catch (PersistenceException e) {
+            // Only costs re-reading this chunk if the run is interrupted
+            resolver.revert();
+            LOG.warn("Could not checkpoint {} at {}", checkpointId, offset, e);
+        }
+    }
+
+    /**
+     * Remove the checkpoint of a run that will not be resumed, e.g. one an
+     * operator stopped.
+     *
+     * @param checkpointId Checkpoint ID passed to {@link #terminateAll(List, String, ProgressListener)}
+     */
+    public void clearCheckpoint(String checkpointId) {
+        if (checkpointId == null) {
+            return;
+        }
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            ResourceResolver resolver = lease.getResourceResolver();
+            Resource checkpoint = resolver.getResource(checkpointPath(checkpointId));
+            if (checkpoint != null) {
+                resolver.delete(checkpoint);
+                resolver.commit();
+            }
+        } catch (LoginException | PersistenceException e) {
+            LOG.warn("Could not remove checkpoint {}", checkpointId, e);
+        }
+    }
+
+    private String checkpointPath(String checkpointId) {
+        // Sling job IDs contain slashes
+        return checkpointPath + "/" + checkpointId.replace('/', '_');
+    }
+
+    private List<String> nextChunk(ResourceResolver resolver, String query, Set<String> attempted) {
+        List<String> chunk = new ArrayList<>(chunkSize);
+        Iterator<Resource> matches = resolver.findResources(query, "JCR-SQL2");
+        while (chunk.size() < chunkSize && matches.hasNext()) {
+            String workflowId = matches.next().getPath();
+            // Instances that failed to terminate still match; don't retry them forever
+            if (!attempted.contains(workflowId)) {
+                chunk.add(workflowId);
+            }
+        }
+        return chunk;
+    }
+
+    private void terminateOne(WorkflowSession workflowSession, String workflowId, BulkTerminateResult result) {
+        try {
+            Workflow workflow = workflowSession.getWorkflow(workflowId);
+            if (workflow == null) {
+                result.skipped(workflowId, "Not found");
+                return;
+            }
+            String state = workflow.getState();
+            if ("COMPLETED".equals(state) || "ABORTED".equals(state)) {
+                result.skipped(workflowId, "Already " + state);
+                return;
+            }
+            workflowSession.terminateWorkflow(workflow);
+            inFlightIndex.remove(workflowId);
+            result.terminated(workflowId);
+
+        } catch (Exception e) {
+            LOG.warn("Failed to terminate workflow: {}", workflowId, e);
+            result.failed(workflowId, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+}
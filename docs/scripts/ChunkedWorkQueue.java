@@ -0,0 +1,196 @@
+package com.example.core.workflows;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded producer/worker pipeline for bulk runs over payload paths.
+ *
+ * The calling thread splits the paths into chunks and hands them to a fixed
+ * number of virtual-thread workers through a bounded queue, so it blocks
+ * while the workers are behind instead of buffering the whole list. Every
+ * path ends up either processed by a handler or reported to the failure
+ * handler:
+ * <ul>
+ *   <li>a chunk whose handler throws is reported and the worker carries on
+ *       with the next chunk; a worker that dies (Error, interrupt) reports
+ *       the chunk it was on;</li>
+ *   <li>the producer waits on the queue in short steps and gives up once no
+ *       worker is left to drain it, reporting the paths still queued and not
+ *       yet queued;</li>
+ *   <li>an interrupted run reports everything that was not processed.</li>
+ * </ul>
+ *
+ * Used by {@link BulkWorkflowStarter} and {@link SyntheticProcessRunner}.
+ */
+public final class ChunkedWorkQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkedWorkQueue.class);
+
+    // How long a blocked producer waits before checking that workers are still alive
+    private static final long OFFER_TIMEOUT_MILLIS = 1000;
+
+    // Marks the end of the chunk queue for one worker
+    private static final List<String> END_OF_QUEUE = Collections.emptyList();
+
+    /**
+     * Processes one chunk on a worker thread. Each worker gets its own handler.
+     */
+    @FunctionalInterface
+    public interface ChunkHandler {
+
+        /**
+         * @param chunk Paths to process
+         * @throws InterruptedException if the worker was interrupted; the whole
+         *         chunk is reported and the worker stops
+         */
+        void process(List<String> chunk) throws InterruptedException;
+    }
+
+    /**
+     * Receives paths that were not processed. Called from any thread.
+     */
+    @FunctionalInterface
+    public interface FailureHandler {
+
+        void failed(List<String> paths, String reason);
+    }
+
+    private ChunkedWorkQueue() {
+    }
+
+    /**
+     * Number of workers for a run. Every worker holds a pooled session for the
+     * length of a chunk, so the requested parallelism is capped at the pool
+     * size less the sessions reserved for other callers (at least one worker).
+     *
+     * @param parallelism Requested workers
+     * @param poolSize Maximum size of the session pool
+     * @param reservedSessions Sessions to leave free
+     * @return Workers to start
+     */
+    public static int workerCount(int parallelism, int poolSize, int reservedSessions) {
+        int workers = Math.max(1, Math.min(parallelism, poolSize - Math.max(0, reservedSessions)));
+        if (workers < parallelism) {
+            LOG.warn("Parallelism {} capped at {}: session pool size {}, {} reserved",
+                parallelism, workers, poolSize, reservedSessions);
+        }
+        return workers;
+    }
+
+    /**
+     * Process every path in chunks on {@code workers} virtual threads and
+     * return once all of them are processed or reported as failed.
+     *
+     * @param paths Payload paths
+     * @param chunkSize Paths per chunk
+     * @param workers Worker threads
+     * @param queueCapacity Chunks buffered ahead of the workers
+     * @param threadName Prefix of the worker thread names
+     * @param handlers Creates the handler of each worker
+     * @param onFailure Receives paths that were not processed
+     */
+    public static void run(List<String> paths, int chunkSize, int workers, int queueCapacity, String threadName,
+                           Supplier<ChunkHandler> handlers, FailureHandler onFailure) {
+        BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        AtomicInteger alive = new AtomicInteger(workers);
+        int size = Math.max(1, chunkSize);
+        int total = paths.size();
+        int from = 0;
+
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name(threadName, 0).factory());
+        try {
+            for (int i = 0; i < workers; i++) {
+                executor.submit(() -> work(queue, handlers, onFailure, alive));
+            }
+            try {
+                for (; from < total; from += size) {
+                    if (!offer(queue, new ArrayList<>(paths.subList(from, Math.min(from + size, total))), alive)) {
+                        LOG.error("{}: no worker left after queueing {}/{} paths", threadName, from, total);
+                        break;
+                    }
+                }
+                for (int i = 0; i < workers; i++) {
+                    if (!offer(queue, END_OF_QUEUE, alive)) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("{}: interrupted after queueing {}/{} paths", threadName, from, total);
+                executor.shutdownNow();
+            }
+        } finally {
+            // Waits for the workers to drain the queue
+            executor.close();
+        }
+
+        // Chunks left behind by workers that died or were interrupted
+        List<List<String>> unprocessed = new ArrayList<>();
+        queue.drainTo(unprocessed);
+        for (List<String> chunk : unprocessed) {
+            if (chunk != END_OF_QUEUE) {
+                onFailure.failed(chunk, "Not processed: run aborted");
+            }
+        }
+        if (from < total) {
+            onFailure.failed(paths.subList(from, total), "Not processed: run aborted");
+        }
+    }
+
+    /**
+     * Queue a chunk, waiting in short steps so that a queue nobody drains any
+     * more does not block the producer forever.
+     *
+     * @return false if every worker has exited
+     */
+    private static boolean offer(BlockingQueue<List<String>> queue, List<String> chunk, AtomicInteger alive)
+            throws InterruptedException {
+        while (alive.get() > 0) {
+            if (queue.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void work(BlockingQueue<List<String>> queue, Supplier<ChunkHandler> handlers,
+                             FailureHandler onFailure, AtomicInteger alive) {
+        // The chunk being processed, reported if the worker stops before finishing it
+        List<String> current = null;
+        try {
+            ChunkHandler handler = handlers.get();
+            List<String> chunk;
+            while ((chunk = queue.take()) != END_OF_QUEUE) {
+                current = chunk;
+                try {
+                    handler.process(chunk);
+                } catch (RuntimeException e) {
+                    LOG.error("Chunk of {} paths failed", chunk.size(), e);
+                    onFailure.failed(chunk, "Chunk failed: "
+                        + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+                }
+                current = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            alive.decrementAndGet();
+            if (current != null) {
+                onFailure.failed(current, "Not processed: worker stopped");
+            }
+        }
+    }
+}
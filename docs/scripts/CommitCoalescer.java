@@ -0,0 +1,267 @@
+package com.example.core.workflows;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces the per-asset commits of workflow processes into batches.
+ *
+ * Processes describe their repository writes as a {@link Mutation} and call
+ * {@link #commitOrDefer}. Inside a normal workflow step that applies the
+ * mutation and commits right away, exactly as before. When a bulk or
+ * synthetic runner has opened a {@link Batch} for the resolver on the current
+ * thread, the commit is deferred and the batch commits once every N assets
+ * or T milliseconds, turning 100k tiny commits into a few hundred.
+ *
+ * If a batch commit fails, the batch is reverted and its mutations are
+ * replayed and committed one asset at a time, so one bad asset fails alone
+ * instead of taking the rest of the batch with it. Mutations must therefore
+ * be repeatable: look resources up through the given resolver rather than
+ * capturing value maps. Several mutations for the same key (e.g. from a chain
+ * of steps on one payload) are kept and replayed in order, in one commit.
+ *
+ * Batches are bound to a thread because resolvers are; the time limit is
+ * checked when an asset is added, not by a timer.
+ */
+public final class CommitCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommitCoalescer.class);
+
+    private static final ThreadLocal<Batch> CURRENT = new ThreadLocal<>();
+
+    /**
+     * A repeatable set of changes for one asset.
+     */
+    @FunctionalInterface
+    public interface Mutation {
+        void apply(ResourceResolver resolver) throws PersistenceException;
+    }
+
+    private CommitCoalescer() {
+    }
+
+    /**
+     * Start coalescing commits of the given resolver on this thread. Nested
+     * calls for the same resolver join the open batch.
+     *
+     * @param resolver The resolver processes commit through
+     * @param maxAssets Commit after this many assets
+     * @param maxMillis Commit when the oldest uncommitted asset is this old
+     * @return The batch; close it to commit the rest and end coalescing
+     */
+    public static Batch open(ResourceResolver resolver, int maxAssets, long maxMillis) {
+        Batch current = CURRENT.get();
+        if (current != null) {
+            if (current.resolver != resolver) {
+                throw new IllegalStateException("A commit batch for another resolver is open on this thread");
+            }
+            current.depth++;
+            return current;
+        }
+        Batch batch = new Batch(resolver, maxAssets, maxMillis);
+        CURRENT.set(batch);
+        return batch;
+    }
+
+    /**
+     * Apply a mutation and commit it, now or as part of the open batch.
+     *
+     * @param resolver The resolver to write through
+     * @param key Identifies the asset in logs and failure reports (usually its path)
+     * @param mutation The changes
+     * @throws PersistenceException if committing immediately fails (batched
+     *         failures are reported by the batch instead)
+     */
+    public static void commitOrDefer(ResourceResolver resolver, String key, Mutation mutation)
+            throws PersistenceException {
+        Batch batch = CURRENT.get();
+        if (batch == null || batch.resolver != resolver) {
+            mutation.apply(resolver);
+            resolver.commit();
+            return;
+        }
+        batch.add(key, mutation);
+    }
+
+    /**
+     * @return true if commits of this resolver are currently deferred on this thread
+     */
+    public static boolean isBatching(ResourceResolver resolver) {
+        Batch batch = CURRENT.get();
+        return batch != null && batch.resolver == resolver;
+    }
+
+    /**
+     * Commits deferred by {@link #commitOrDefer} while open.
+     */
+    public static final class Batch implements AutoCloseable {
+
+        private final ResourceResolver resolver;
+        private final int maxAssets;
+        private final long maxMillis;
+        private final Map<String, List<Mutation>> pending = new LinkedHashMap<>();
+        private final List<String> failures = new ArrayList<>();
+        private long oldestPendingAt;
+        private int depth = 1;
+
+        private int committedAssets;
+        private int commits;
+        private int replays;
+
+        private Batch(ResourceResolver resolver, int maxAssets, long maxMillis) {
+            this.resolver = resolver;
+            this.maxAssets = Math.max(1, maxAssets);
+            this.maxMillis = Math.max(0, maxMillis);
+        }
+
+        private void add(String key, Mutation mutation) {
+            try {
+                mutation.apply(resolver);
+            } catch (PersistenceException | RuntimeException e) {
+                LOG.error("Failed to apply changes for {}", key, e);
+                failures.add(key);
+                // Drop its partial changes without losing the other pending assets
+                resolver.revert();
+                reapplyPending();
+                return;
+            }
+            if (pending.isEmpty()) {
+                oldestPendingAt = System.currentTimeMillis();
+            }
+            // A repeated key keeps its first position; all its mutations replay in order
+            pending.computeIfAbsent(key, k -> new ArrayList<>(2)).add(mutation);
+            if (pending.size() >= maxAssets || System.currentTimeMillis() - oldestPendingAt >= maxMillis) {
+                flush();
+            }
+        }
+
+        /**
+         * Commit everything pending now.
+         */
+        public void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                resolver.commit();
+                commits++;
+                committedAssets += pending.size();
+            } catch (PersistenceException e) {
+                LOG.warn("Batch commit of {} asset(s) failed, committing them one by one", pending.size(), e);
+                resolver.revert();
+                replayIndividually();
+            }
+            pending.clear();
+        }
+
+        /**
+         * Re-apply the pending mutations after a revert. An asset whose mutations
+         * now fail is dropped, and the others are applied again from a clean state
+         * so none of its partial changes are committed with them.
+         */
+        private void reapplyPending() {
+            boolean clean = false;
+            while (!clean) {
+                clean = true;
+                for (Iterator<Map.Entry<String, List<Mutation>>> it = pending.entrySet().iterator(); it.hasNext();) {
+                    Map.Entry<String, List<Mutation>> entry = it.next();
+                    if (!applyAll(entry.getKey(), entry.getValue(), "re-apply")) {
+                        failures.add(entry.getKey());
+                        it.remove();
+                        resolver.revert();
+                        clean = false;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void replayIndividually() {
+            replays++;
+            for (Map.Entry<String, List<Mutation>> entry : pending.entrySet()) {
+                if (!applyAll(entry.getKey(), entry.getValue(), "replay")) {
+                    resolver.revert();
+                    failures.add(entry.getKey());
+                    continue;
+                }
+                try {
+                    resolver.commit();
+                    commits++;
+                    committedAssets++;
+                } catch (PersistenceException e) {
+                    LOG.error("Failed to commit changes for {}", entry.getKey(), e);
+                    resolver.revert();
+                    failures.add(entry.getKey());
+                }
+            }
+        }
+
+        private boolean applyAll(String key, List<Mutation> mutations, String action) {
+            try {
+                for (Mutation mutation : mutations) {
+                    mutation.apply(resolver);
+                }
+                return true;
+            } catch (PersistenceException | RuntimeException e) {
+                LOG.error("Failed to {} changes for {}", action, key, e);
+                return false;
+            }
+        }
+
+        /**
+         * Commit what is pending and stop coalescing (the outermost close only).
+         */
+        @Override
+        public void close() {
+            if (--depth > 0) {
+                return;
+            }
+            try {
+                flush();
+            } finally {
+                CURRENT.remove();
+            }
+        }
+
+        /**
+         * @return Assets whose changes are committed
+         */
+        public int getCommittedCount() {
+            return committedAssets;
+        }
+
+        /**
+         * @return Repository commits made; committed assets per commit is the coalescing factor
+         */
+        public int getCommitCount() {
+            return commits;
+        }
+
+        /**
+         * @return Batches that failed and were replayed asset by asset
+         */
+        public int getReplayCount() {
+            return replays;
+        }
+
+        /**
+         * @return Keys of the assets whose changes could not be committed
+         */
+        public List<String> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+
+        public int getPendingCount() {
+            return pending.size();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.core.workflows;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link CommitCoalescer} batch replay. Place in the core
+ * module's test sources (JUnit 5, Mockito).
+ */
+class CommitCoalescerTest {
+
+    private static final String ASSET = "/content/dam/test/image.jpg";
+    private static final String OTHER_ASSET = "/content/dam/test/other.jpg";
+
+    @Test
+    void replaysEveryStepOfAChainedPayloadWhenTheBatchCommitFails() throws Exception {
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        doThrow(new PersistenceException("conflict")).doNothing().when(resolver).commit();
+        List<String> applied = new ArrayList<>();
+
+        try (CommitCoalescer.Batch batch = CommitCoalescer.open(resolver, 100, 60_000)) {
+            // Two steps of a synthetic chain write the same payload
+            CommitCoalescer.commitOrDefer(resolver, ASSET, r -> applied.add("extractor"));
+            CommitCoalescer.commitOrDefer(resolver, ASSET, r -> applied.add("damProcess"));
+            applied.clear();
+
+            batch.flush();
+
+            assertEquals(List.of("extractor", "damProcess"), applied);
+            assertEquals(1, batch.getReplayCount());
+            assertEquals(1, batch.getCommittedCount());
+            assertTrue(batch.getFailures().isEmpty());
+        }
+    }
+
+    @Test
+    void failsThePayloadAloneWhenOneOfItsStepsFailsOnReplay() throws Exception {
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        doThrow(new PersistenceException("conflict")).doNothing().when(resolver).commit();
+        List<String> applied = new ArrayList<>();
+        int[] damProcessCalls = new int[1];
+
+        try (CommitCoalescer.Batch batch = CommitCoalescer.open(resolver, 100, 60_000)) {
+            CommitCoalescer.commitOrDefer(resolver, ASSET, r -> applied.add("extractor"));
+            CommitCoalescer.commitOrDefer(resolver, ASSET, r -> {
+                if (++damProcessCalls[0] > 1) {
+                    throw new PersistenceException("node removed");
+                }
+                applied.add("damProcess");
+            });
+            CommitCoalescer.commitOrDefer(resolver, OTHER_ASSET, r -> applied.add("other"));
+            applied.clear();
+
+            batch.flush();
+
+            assertEquals(List.of(ASSET), batch.getFailures());
+            assertEquals(1, batch.getCommittedCount());
+            assertEquals(List.of("extractor", "other"), applied);
+        }
+    }
+}
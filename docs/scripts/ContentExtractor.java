@@ -0,0 +1,53 @@
+package com.example.core.workflows;
+
+import java.util.Map;
+
+/**
+ * Derives metadata from an asset's binary while it streams past.
+ *
+ * The {@link StreamingContentInspector} reads the original rendition once and
+ * hands every chunk to the inspections of all accepting extractors, so adding
+ * an extractor never adds a read of the binary. Inspections see each chunk
+ * exactly once and must keep only bounded state (a digest, a few header
+ * bytes, a capped packet buffer): assets can be many gigabytes.
+ *
+ * Register an implementation as an OSGi service to add it to the inspector.
+ */
+public interface ContentExtractor {
+
+    /**
+     * @param mimeType MIME type of the asset, may be null
+     * @return true if this extractor wants to see the content
+     */
+    boolean accepts(String mimeType);
+
+    /**
+     * Start inspecting one asset. Called on the inspecting thread; the returned
+     * inspection is used by that thread only.
+     *
+     * @param mimeType MIME type of the asset, may be null
+     * @param size Size of the content in bytes, or -1 if unknown
+     */
+    Inspection open(String mimeType, long size);
+
+    /**
+     * The state of one extractor for one asset.
+     */
+    interface Inspection {
+
+        /**
+         * Consume the next chunk. The buffer is reused after the call returns.
+         *
+         * @return true to keep receiving content, false once done
+         */
+        boolean update(byte[] buffer, int offset, int length);
+
+        /**
+         * Put the extracted metadata into the results.
+         *
+         * @param complete false if the inspector stopped early (budget exceeded);
+         *        results that depend on the whole content must then be left out
+         */
+        void finish(boolean complete, Map<String, Object> results);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.core.workflows;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets asset processes skip assets whose binary has not changed since they
+ * last processed them.
+ *
+ * The fingerprint of an asset for a processor is a SHA-256 over the processor
+ * name, the processor version and the identity of the original rendition:
+ * its {@code dam:sha1} (computed by AEM on upload) or, without one, its size
+ * and the asset's last modification time. It is stored per processor under
+ * the asset's {@code jcr:content/processingFingerprints} node, written as the
+ * last write of the process once all its work has succeeded, so an asset is
+ * only ever skipped after it was processed successfully.
+ *
+ * Bump the processor version when the processing changes, and pass
+ * {@code FORCE_REPROCESS:true} as a process argument to ignore the index for
+ * one run.
+ */
+@Component(service = ContentFingerprintIndex.class)
+@Designate(ocd = ContentFingerprintIndex.Config.class)
+public class ContentFingerprintIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ContentFingerprintIndex.class);
+
+    public static final String FORCE_ARG = "FORCE_REPROCESS";
+
+    static final String FINGERPRINTS = "jcr:content/processingFingerprints";
+
+    @ObjectClassDefinition(
+        name = "Example - Content Fingerprint Index",
+        description = "Skips reprocessing of assets whose original has not changed"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Enabled", description = "When disabled every asset is processed")
+        boolean enabled() default true;
+    }
+
+    /**
+     * The fingerprint of one asset for one processor.
+     */
+    public static final class Check {
+
+        private final String assetPath;
+        private final String processor;
+        private final String fingerprint;
+        private final boolean unchanged;
+
+        private Check(String assetPath, String processor, String fingerprint, boolean unchanged) {
+            this.assetPath = assetPath;
+            this.processor = processor;
+            this.fingerprint = fingerprint;
+            this.unchanged = unchanged;
+        }
+
+        /**
+         * @return true if the processor already processed this content; skip the asset
+         */
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Store the fingerprint. Call it last, once everything the process does
+         * has succeeded: in its own final {@link CommitCoalescer#commitOrDefer}
+         * ({@code fingerprint::record}), or inside the process's last mutation
+         * when nothing runs after it.
+         */
+        public void record(ResourceResolver resolver) throws PersistenceException {
+            Resource fingerprints = ResourceUtil.getOrCreateResource(resolver, assetPath + "/" + FINGERPRINTS,
+                Collections.singletonMap("jcr:primaryType", (Object) "nt:unstructured"), null, false);
+            ModifiableValueMap values = fingerprints.adaptTo(ModifiableValueMap.class);
+            if (values != null) {
+                values.put(processor, fingerprint);
+            }
+        }
+    }
+
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+
+    private volatile boolean enabled;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        enabled = config.enabled();
+    }
+
+    /**
+     * Compare the asset's current fingerprint with the one recorded for the processor.
+     *
+     * @param snapshot The asset
+     * @param processor Processor name, also the property the fingerprint is stored in
+     * @param version Processor version; a new version reprocesses everything once
+     * @param force true to process even if unchanged
+     */
+    public Check check(AssetSnapshot snapshot, String processor, String version, boolean force) {
+        String fingerprint = fingerprint(snapshot, processor, version);
+        boolean unchanged = false;
+        if (enabled && !force) {
+            Resource fingerprints = snapshot.getResource().getChild(FINGERPRINTS);
+            unchanged = fingerprints != null && fingerprint.equals(
+                fingerprints.getValueMap().get(processor, String.class));
+        }
+        if (unchanged) {
+            skipped.increment();
+            LOG.debug("Skipping {} for {}: content unchanged", processor, snapshot.getPath());
+        } else {
+            processed.increment();
+        }
+        return new Check(snapshot.getPath(), processor, fingerprint, unchanged);
+    }
+
+    private static String fingerprint(AssetSnapshot snapshot, String processor, String version) {
+        String identity = snapshot.getMetadataValue("dam:sha1");
+        if (identity == null || identity.isEmpty()) {
+            Rendition original = snapshot.getOriginal();
+            Asset asset = snapshot.getAsset();
+            long lastModified = asset != null ? asset.getLastModified() : 0;
+            identity = (original != null ? original.getSize() : -1) + "@" + lastModified;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        String input = processor + '\n' + version + '\n' + identity;
+        return HexFormat.of().formatHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Assets skipped because their content was unchanged
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return Assets checked and processed (new, changed, forced, or index disabled)
+     */
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+}
@@ -5,12 +5,13 @@ import com.adobe.granite.workflow.WorkflowSession;
 import com.adobe.granite.workflow.exec.WorkItem;
 import com.adobe.granite.workflow.exec.WorkflowProcess;
 import com.adobe.granite.workflow.metadata.MetaDataMap;
-import com.day.cq.dam.api.Asset;
 import com.day.cq.dam.api.Rendition;
 import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,12 +31,26 @@ public class DamAssetWorkflowProcessTemplate implements WorkflowProcess {
     
     private static final Logger LOG = LoggerFactory.getLogger(DamAssetWorkflowProcessTemplate.class);
     
+    private static final String PROCESSOR_NAME = "damAssetProcessTemplate";
+    // Bump when the processing changes so unchanged assets are processed again
+    private static final String PROCESSOR_VERSION = "1";
+    
+    @Reference
+    private ContentFingerprintIndex fingerprintIndex;
+    
+    @Reference
+    private RenditionProcessingStage renditionStage;
+    
+    @Reference
+    private WorkflowMetrics metrics;
+    
     @Override
     public void execute(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap) 
             throws WorkflowException {
         
         LOG.info("Starting DAM asset workflow process");
         
+        WorkflowMetrics.Execution execution = metrics.start(PROCESSOR_NAME);
         try {
             ResourceResolver resolver = workflowSession.adaptTo(ResourceResolver.class);
             if (resolver == null) {
@@ -46,26 +61,47 @@ public class DamAssetWorkflowProcessTemplate implements WorkflowProcess {
             String assetPath = workItem.getWorkflowData().getPayload().toString();
             LOG.info("Processing asset: {}", assetPath);
             
-            // Get asset resource
-            Resource assetResource = resolver.getResource(assetPath);
-            if (assetResource == null) {
+            // Get asset resource; the snapshot reads everything at most once per execution
+            AssetSnapshot snapshot = AssetSnapshot.of(resolver, assetPath);
+            if (snapshot == null) {
                 LOG.warn("Asset resource not found: {}", assetPath);
                 return;
             }
+            execution.phase(WorkflowMetrics.Phase.RESOLVE);
             
             // Adapt to Asset
-            Asset asset = assetResource.adaptTo(Asset.class);
-            if (asset == null) {
+            if (snapshot.getAsset() == null) {
                 LOG.warn("Resource is not a DAM asset: {}", assetPath);
                 return;
             }
+            execution.phase(WorkflowMetrics.Phase.ADAPT);
             
             // Read process arguments
-            String processArgs = metaDataMap.get("PROCESS_ARGS", String.class);
+            ProcessArgs processArgs = ProcessArgs.of(metaDataMap); // parsed once per step configuration
             LOG.debug("Process arguments: {}", processArgs);
             
+            // Skip assets whose original has not changed since they were last processed
+            boolean force = processArgs.getBoolean(ContentFingerprintIndex.FORCE_ARG, false);
+            ContentFingerprintIndex.Check fingerprint = fingerprintIndex.check(snapshot, PROCESSOR_NAME,
+                PROCESSOR_VERSION, force);
+            if (fingerprint.isUnchanged()) {
+                LOG.info("Asset unchanged since last processing, skipping: {}", assetPath);
+                return;
+            }
+            
             // Process the asset
-            processAsset(asset, assetResource, resolver, processArgs);
+            boolean complete = processAsset(snapshot, resolver, processArgs, execution);
+            execution.phase(WorkflowMetrics.Phase.PROCESS);
+            
+            // Record the fingerprint last, once all processing succeeded: a run that
+            // fails anywhere above, or leaves renditions failed or timed out, must not
+            // make the next run skip the asset
+            if (complete) {
+                CommitCoalescer.commitOrDefer(resolver, assetPath, fingerprint::record);
+                execution.phase(WorkflowMetrics.Phase.COMMIT);
+            } else {
+                LOG.info("Renditions of {} not all processed, not recording fingerprint", assetPath);
+            }
             
             // Update workflow metadata
             MetaDataMap workflowMetadata = workItem.getWorkflow().getMetaDataMap();
@@ -76,7 +112,11 @@ public class DamAssetWorkflowProcessTemplate implements WorkflowProcess {
             
         } catch (Exception e) {
             LOG.error("Error processing asset in workflow", e);
+            execution.fail();
             throw new WorkflowException("Asset processing failed", e);
+            
+        } finally {
+            execution.end();
         }
     }
     
@@ -87,70 +127,99 @@ public class DamAssetWorkflowProcessTemplate implements WorkflowProcess {
      * - Extracting metadata
      * - Generating custom renditions
      * 
-     * @param asset The DAM asset
-     * @param assetResource The asset resource
+     * @param snapshot The DAM asset, read once for the execution
      * @param resolver The resource resolver
      * @param processArgs Process arguments
+     * @param execution Metrics of this execution; the commit is timed as its own phase
+     * @return true if every rendition was processed, false if any failed or timed out
+     * @throws PersistenceException if the metadata cannot be committed; the asset is
+     *         then not recorded as processed
      */
-    private void processAsset(Asset asset, Resource assetResource, ResourceResolver resolver, String processArgs) {
-        LOG.info("Processing asset: {}", asset.getPath());
+    private boolean processAsset(AssetSnapshot snapshot, ResourceResolver resolver, ProcessArgs processArgs,
+                              WorkflowMetrics.Execution execution) throws PersistenceException {
+        LOG.info("Processing asset: {}", snapshot.getPath());
         
         // Example 1: Access asset metadata
-        String mimeType = asset.getMimeType();
-        String assetName = asset.getName();
+        String mimeType = snapshot.getMimeType();
+        String assetName = snapshot.getName();
         LOG.debug("Asset mime type: {}, name: {}", mimeType, assetName);
         
-        // Example 2: Get and process original rendition
-        Rendition original = asset.getOriginal();
+        // Example 2: Process all renditions, in parallel on a bounded pool (see RenditionProcessingStage)
+        RenditionProcessingStage.Results<String> renditionResults =
+            renditionStage.process(snapshot.getRenditions(), this::processRendition);
+        LOG.debug("Processed {} rendition(s) in {} ms, {} failed", renditionResults.getResults().size(),
+            renditionResults.getDurationMillis(), renditionResults.getFailures().size());
+        
+        // Example 3: Get and process original rendition (found in the rendition list already read)
+        Rendition original = snapshot.getOriginal();
         if (original != null) {
             LOG.debug("Original rendition size: {} bytes", original.getSize());
             // Process original rendition if needed
         }
         
-        // Example 3: Iterate through all renditions
-        for (Rendition rendition : asset.getRenditions()) {
-            String renditionName = rendition.getName();
-            long renditionSize = rendition.getSize();
-            LOG.debug("Rendition: {}, size: {} bytes", renditionName, renditionSize);
-            
-            // TODO: Process individual renditions if needed
-        }
-        
         // Example 4: Update asset metadata
-        Resource metadataResource = assetResource.getChild("jcr:content/metadata");
-        if (metadataResource != null) {
-            ModifiableValueMap metadata = metadataResource.adaptTo(ModifiableValueMap.class);
-            if (metadata != null) {
-                // Add custom metadata
-                metadata.put("customProcessed", true);
-                metadata.put("customProcessedDate", new Date());
-                metadata.put("customProcessor", this.getClass().getSimpleName());
-                
-                try {
-                    resolver.commit();
-                    LOG.info("Asset metadata updated successfully");
-                } catch (Exception e) {
-                    LOG.error("Failed to commit metadata changes", e);
+        // Committed per asset, or batched when a bulk runner coalesces commits (see CommitCoalescer)
+        Resource metadataNode = snapshot.getMetadataResource();
+        if (metadataNode != null) {
+            String metadataPath = metadataNode.getPath();
+            execution.phase(WorkflowMetrics.Phase.PROCESS);
+            CommitCoalescer.commitOrDefer(resolver, snapshot.getPath(), r -> {
+                Resource metadataResource = r.getResource(metadataPath);
+                ModifiableValueMap metadata = metadataResource != null
+                    ? metadataResource.adaptTo(ModifiableValueMap.class) : null;
+                if (metadata != null) {
+                    // Add custom metadata
+                    metadata.put("customProcessed", true);
+                    metadata.put("customProcessedDate", new Date());
+                    metadata.put("customProcessor", getClass().getSimpleName());
+                    // Aggregated rendition results, written once with everything else
+                    metadata.put("customRenditionsProcessed", renditionResults.getResults().size());
+                    if (renditionResults.getFailures().isEmpty()) {
+                        metadata.remove("customRenditionFailures");
+                    } else {
+                        metadata.put("customRenditionFailures",
+                            renditionResults.getFailures().keySet().toArray(new String[0]));
+                    }
                 }
-            }
+            });
+            LOG.info("Asset metadata updated successfully");
+            execution.phase(WorkflowMetrics.Phase.COMMIT);
         }
         
         // Example 5: Check asset properties
-        if (asset.getMetadata("dc:title") != null) {
-            LOG.debug("Asset title: {}", asset.getMetadata("dc:title"));
+        Object title = snapshot.getMetadata("dc:title");
+        if (title != null) {
+            LOG.debug("Asset title: {}", title);
         }
         
         // TODO: Add your custom asset processing logic here
-        performCustomAssetProcessing(asset, processArgs);
+        performCustomAssetProcessing(snapshot, processArgs);
+        
+        return renditionResults.getFailures().isEmpty() && !renditionResults.isTimedOut();
+    }
+    
+    /**
+     * Implement per-rendition work (validation, watermark checks, CDN pre-warming).
+     * Runs on the rendition processing pool: do not use the workflow session or
+     * its resolver here, and leave writing to processAsset.
+     * 
+     * @param rendition The rendition, as captured on the workflow thread
+     * @return Result stored by rendition name
+     */
+    private String processRendition(RenditionProcessingStage.RenditionInfo rendition) {
+        LOG.debug("Rendition: {}, size: {} bytes", rendition.getName(), rendition.getSize());
+        
+        // TODO: Process individual renditions if needed
+        return "ok";
     }
     
     /**
      * Implement your custom asset processing logic.
      * 
-     * @param asset The DAM asset to process
+     * @param snapshot The DAM asset to process; use getAsset() for the full Asset API
      * @param processArgs Arguments from the workflow step
      */
-    private void performCustomAssetProcessing(Asset asset, String processArgs) {
+    private void performCustomAssetProcessing(AssetSnapshot snapshot, ProcessArgs processArgs) {
         // TODO: Implement custom logic
         // Examples:
         // - Extract and index custom metadata
@@ -159,6 +228,6 @@ public class DamAssetWorkflowProcessTemplate implements WorkflowProcess {
         // - Perform image analysis
         // - Tag assets automatically
         
-        LOG.info("Custom asset processing for: {}", asset.getPath());
+        LOG.info("Custom asset processing for: {}", snapshot.getPath());
     }
 }
@@ -0,0 +1,239 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.exec.Workflow;
+import com.adobe.granite.workflow.metadata.MetaDataMap;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.ScheduledJobInfo;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fires approval escalations when they are due.
+ *
+ * Approval steps register a deadline when they start and cancel it when a
+ * decision is recorded. Each deadline is a Sling scheduled job for the
+ * deadline's time, so nothing polls: a thousand pending approvals cost a
+ * thousand stored schedules instead of repeated escalation-check runs in the
+ * workflow engine. Sling persists the schedules, shares them across the
+ * cluster (every author node and pod sees deadlines registered anywhere) and
+ * runs each job once, on one instance, so an escalation is neither lost with
+ * the node that registered it nor fired by every node.
+ *
+ * Firing checks that the instance is still running, still waiting on the
+ * same level and not yet escalated, so a stale or duplicate deadline is
+ * harmless. The approval steps keep that state in the instance metadata
+ * ({@code workItem.getWorkflow().getMetaDataMap()}, the instance's metaData
+ * node), so the escalation is read from and written to the same node, where
+ * the next step and the escalation check see it.
+ *
+ * Optional job queue configuration (retries when the instance is busy):
+ * <pre>
+ * PID: org.apache.sling.event.jobs.QueueConfiguration~approvalescalation
+ * queue.name = "Approval Escalations"
+ * queue.topics = ["com/example/workflow/approval-escalation"]
+ * queue.type = "UNORDERED"
+ * queue.retries = 5
+ * </pre>
+ */
+@Component(
+    service = {EscalationScheduler.class, JobConsumer.class},
+    property = {
+        JobConsumer.PROPERTY_TOPICS + "=" + EscalationScheduler.TOPIC
+    }
+)
+@Designate(ocd = EscalationScheduler.Config.class)
+public class EscalationScheduler implements JobConsumer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EscalationScheduler.class);
+
+    public static final String TOPIC = "com/example/workflow/approval-escalation";
+
+    private static final String PROP_WORKFLOW_ID = "workflowId";
+    private static final String PROP_PAYLOAD = "payload";
+    private static final String PROP_LEVEL = "level";
+    private static final String PROP_DUE_AT = "dueAt";
+    private static final String PROP_THRESHOLD_HOURS = "thresholdHours";
+
+    @ObjectClassDefinition(
+        name = "Example - Approval Escalation Scheduler",
+        description = "Escalates approval steps when their deadline passes"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Default threshold (hours)",
+            description = "Time an approval step may wait before it is escalated")
+        long default_threshold_hours() default 48;
+    }
+
+    @Reference
+    private JobManager jobManager;
+
+    @Reference
+    private WorkflowSessionPool sessionPool;
+
+    @Reference
+    private ApprovalRoutingTable routingTable;
+
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    private volatile long defaultThresholdHours;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        defaultThresholdHours = Math.max(1, config.default_threshold_hours());
+    }
+
+    public long getDefaultThresholdHours() {
+        return defaultThresholdHours;
+    }
+
+    /**
+     * Register (or replace) the escalation deadline of a workflow's current approval step.
+     * Only hands the schedule to Sling; no session is leased and nothing is committed here.
+     *
+     * @param workflowId Workflow instance ID
+     * @param payloadPath The workflow payload, used to route the escalation
+     * @param level The approval level that is waiting
+     * @param stepStartMillis When the step started
+     * @param thresholdHours Hours the step may wait
+     */
+    public void schedule(String workflowId, String payloadPath, int level, long stepStartMillis,
+                         long thresholdHours) {
+        long dueAt = stepStartMillis + TimeUnit.HOURS.toMillis(thresholdHours);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(PROP_WORKFLOW_ID, workflowId);
+        properties.put(PROP_PAYLOAD, payloadPath);
+        properties.put(PROP_LEVEL, level);
+        properties.put(PROP_DUE_AT, dueAt);
+        properties.put(PROP_THRESHOLD_HOURS, thresholdHours);
+
+        cancel(workflowId);
+        ScheduledJobInfo scheduled = jobManager.createJob(TOPIC).properties(properties)
+            .schedule().at(new Date(dueAt)).add();
+        if (scheduled == null) {
+            // EscalationSweepJob still picks the approval up once it is overdue
+            LOG.warn("Could not schedule escalation of {} level {}", workflowId, level);
+            return;
+        }
+        LOG.debug("Scheduled escalation of {} level {} in {} hours", workflowId, level, thresholdHours);
+    }
+
+    /**
+     * Drop the pending deadline of a workflow, e.g. once a decision is recorded.
+     * Works for deadlines registered on any cluster node.
+     */
+    public void cancel(String workflowId) {
+        for (ScheduledJobInfo scheduled : jobManager.getScheduledJobs(TOPIC, 0,
+                Collections.singletonMap(PROP_WORKFLOW_ID, (Object) workflowId))) {
+            scheduled.unschedule();
+            LOG.debug("Cancelled escalation of {}", workflowId);
+        }
+    }
+
+    /**
+     * Fire a deadline that fell due. Runs once in the cluster, on a job thread.
+     */
+    @Override
+    public JobResult process(Job job) {
+        String workflowId = job.getProperty(PROP_WORKFLOW_ID, String.class);
+        String payloadPath = job.getProperty(PROP_PAYLOAD, String.class);
+        int level = job.getProperty(PROP_LEVEL, 0);
+        long dueAt = job.getProperty(PROP_DUE_AT, 0L);
+        long thresholdHours = job.getProperty(PROP_THRESHOLD_HOURS, defaultThresholdHours);
+        if (workflowId == null) {
+            return JobResult.CANCEL;
+        }
+
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            WorkflowSession workflowSession = lease.getWorkflowSession();
+            Workflow workflow = workflowSession.getWorkflow(workflowId);
+            MetaDataMap metadata = workflow != null ? workflow.getMetaDataMap() : null;
+
+            if (metadata == null || !workflow.isActive() || ApprovalEscalation.isEscalated(metadata)
+                    || metadata.get(ApprovalEscalation.CURRENT_STEP_LEVEL, 0) != level) {
+                skipped.increment();
+                LOG.debug("Escalation of {} level {} no longer applies", workflowId, level);
+                return JobResult.OK;
+            }
+
+            // Outside a step nothing saves the MetaDataMap, so write the instance's
+            // metaData node the steps' map is stored in, as EscalationSweepJob does
+            ResourceResolver resolver = lease.getResourceResolver();
+            Resource metaDataNode = resolver.getResource(workflowId + "/metaData");
+            ModifiableValueMap stored = metaDataNode != null ? metaDataNode.adaptTo(ModifiableValueMap.class) : null;
+            if (stored == null) {
+                LOG.warn("Metadata of {} not writable, retrying", workflowId);
+                return JobResult.FAILED;
+            }
+
+            long hoursElapsed = thresholdHours + TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis() - dueAt);
+            String target = routingTable.getEscalationTarget(payloadPath,
+                routingTable.getContentType(resolver, payloadPath), level);
+            ApprovalEscalation.apply(stored, hoursElapsed, thresholdHours, target);
+            resolver.commit();
+            fired.increment();
+            LOG.info("Escalated workflow {} level {} to {}", workflowId, level, target);
+            return JobResult.OK;
+
+        } catch (PersistenceException e) {
+            // e.g. the engine saved the instance at the same time; the pool reverts the resolver on return
+            LOG.warn("Could not save escalation of {}, retrying", workflowId, e);
+            return JobResult.FAILED;
+
+        } catch (LoginException | WorkflowException e) {
+            LOG.warn("Could not escalate {}, retrying", workflowId, e);
+            return JobResult.FAILED;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return Deadlines scheduled in the cluster and not yet due
+     */
+    public int getPendingCount() {
+        return jobManager.getScheduledJobs(TOPIC, 0).size();
+    }
+
+    /**
+     * @return Escalations fired by this instance
+     */
+    public long getFiredCount() {
+        return fired.sum();
+    }
+
+    /**
+     * @return Deadlines that fell due on this instance but no longer applied
+     *         (decided, moved on, not running)
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.core.workflows;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled sweep that escalates overdue approvals in bulk.
+ *
+ * One query selects every running instance of the configured approval
+ * models. Thresholds are evaluated in memory against each instance's
+ * metadata (the THRESHOLD_HOURS argument of the model's Escalation Check
+ * step, read once per model and sweep), and escalations are committed in
+ * batches. Nothing runs inside the workflow engine, so tens of thousands of
+ * open approvals are checked in one pass instead of one step execution each.
+ *
+ * A batch that fails to commit (e.g. because the engine changed an instance
+ * at the same time) is reverted and picked up again by the next sweep.
+ * The sweep runs on the cluster leader only (scheduler.runOn).
+ */
+@Component(service = {EscalationSweepJob.class, Runnable.class})
+@Designate(ocd = EscalationSweepJob.Config.class)
+public class EscalationSweepJob implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EscalationSweepJob.class);
+
+    private static final String ESCALATION_CHECK_PROCESS = "EscalationCheckProcess";
+
+    @ObjectClassDefinition(
+        name = "Example - Approval Escalation Sweep",
+        description = "Periodically escalates all overdue approvals of the approval models"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Schedule", description = "Quartz cron expression")
+        String scheduler_expression() default "0 */15 * * * ?";
+
+        @AttributeDefinition(name = "Concurrent", description = "Keep false: sweeps must not overlap")
+        boolean scheduler_concurrent() default false;
+
+        @AttributeDefinition(name = "Run on",
+            description = "LEADER or SINGLE: one cluster node sweeps, so nodes do not race to escalate")
+        String scheduler_runOn() default "LEADER";
+
+        @AttributeDefinition(name = "Approval models", description = "Workflow model IDs to sweep")
+        String[] model_ids() default {"/var/workflow/models/multi-step-approval"};
+
+        @AttributeDefinition(name = "Batch size", description = "Escalations per commit")
+        int batch_size() default 500;
+    }
+
+    /**
+     * Outcome of one sweep.
+     */
+    public static final class Report {
+
+        private final int examined;
+        private final int escalated;
+        private final int failed;
+        private final long durationMillis;
+
+        Report(int examined, int escalated, int failed, long durationMillis) {
+            this.examined = examined;
+            this.escalated = escalated;
+            this.failed = failed;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * @return Running approval instances looked at
+         */
+        public int getExaminedCount() {
+            return examined;
+        }
+
+        public int getEscalatedCount() {
+            return escalated;
+        }
+
+        /**
+         * @return Escalations lost to failed commits; retried by the next sweep
+         */
+        public int getFailedCount() {
+            return failed;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("examined=%d, escalated=%d, failed=%d, duration=%dms",
+                examined, escalated, failed, durationMillis);
+        }
+    }
+
+    @Reference
+    private WorkflowSessionPool sessionPool;
+
+    @Reference
+    private ApprovalRoutingTable routingTable;
+
+    @Reference
+    private EscalationScheduler escalationScheduler;
+
+    private volatile String[] modelIds;
+    private volatile int batchSize;
+    private volatile Report lastReport;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        modelIds = config.model_ids();
+        batchSize = Math.max(1, config.batch_size());
+    }
+
+    @Override
+    public void run() {
+        sweep();
+    }
+
+    /**
+     * Escalate every overdue approval now.
+     *
+     * @return What the sweep did, or null if no session was available
+     */
+    public Report sweep() {
+        if (modelIds.length == 0) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        int examined = 0;
+        int escalated = 0;
+        int failed = 0;
+        int pending = 0;
+
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            ResourceResolver resolver = lease.getResourceResolver();
+            Map<String, Long> thresholds = new HashMap<>();
+
+            Iterator<Resource> instances = resolver.findResources(toQuery(modelIds), "JCR-SQL2");
+            while (instances.hasNext()) {
+                Resource instance = instances.next();
+                examined++;
+                long thresholdHours = thresholds.computeIfAbsent(
+                    instance.getValueMap().get("modelId", ""), modelId -> readThreshold(resolver, modelId));
+                if (escalateIfOverdue(resolver, instance, thresholdHours, start)) {
+                    pending++;
+                }
+                if (pending >= batchSize) {
+                    int committed = commit(resolver, pending);
+                    escalated += committed;
+                    failed += pending - committed;
+                    pending = 0;
+                }
+            }
+            int committed = commit(resolver, pending);
+            escalated += committed;
+            failed += pending - committed;
+        } catch (LoginException e) {
+            LOG.error("No workflow session available, skipping escalation sweep", e);
+            return null;
+        }
+
+        Report report = new Report(examined, escalated, failed, System.currentTimeMillis() - start);
+        lastReport = report;
+        LOG.info("Escalation sweep finished: {}", report);
+        return report;
+    }
+
+    /**
+     * @return The report of the most recent sweep, or null if none has run
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    private boolean escalateIfOverdue(ResourceResolver resolver, Resource instance, long thresholdHours, long now) {
+        // The approval steps keep their state in the instance metadata, not the payload's data/metaData
+        Resource metaData = instance.getChild("metaData");
+        if (metaData == null) {
+            return false;
+        }
+        ValueMap values = metaData.getValueMap();
+        Date stepStartTime = values.get(ApprovalEscalation.CURRENT_STEP_START_TIME, Date.class);
+        if (stepStartTime == null || ApprovalEscalation.isEscalated(values)) {
+            return false;
+        }
+        long hoursElapsed = TimeUnit.MILLISECONDS.toHours(now - stepStartTime.getTime());
+        if (hoursElapsed < thresholdHours) {
+            return false;
+        }
+
+        ModifiableValueMap metadata = metaData.adaptTo(ModifiableValueMap.class);
+        if (metadata == null) {
+            return false;
+        }
+        String payloadPath = instance.getValueMap().get("data/payload/path", String.class);
+        int level = values.get(ApprovalEscalation.CURRENT_STEP_LEVEL, 1);
+        String target = routingTable.getEscalationTarget(payloadPath,
+            routingTable.getContentType(resolver, payloadPath), level);
+        ApprovalEscalation.apply(metadata, hoursElapsed, thresholdHours, target);
+        LOG.debug("Escalating {} level {} to {} after {} hours", instance.getPath(), level, target, hoursElapsed);
+        return true;
+    }
+
+    /**
+     * @return Number of escalations committed (0 if the batch was reverted)
+     */
+    private int commit(ResourceResolver resolver, int pending) {
+        if (pending == 0) {
+            return 0;
+        }
+        try {
+            resolver.commit();
+            return pending;
+        } catch (PersistenceException e) {
+            LOG.warn("Failed to commit {} escalation(s), retrying next sweep", pending, e);
+            resolver.revert();
+            return 0;
+        }
+    }
+
+    /**
+     * THRESHOLD_HOURS of the model's Escalation Check step, or the default
+     * configured on the {@link EscalationScheduler}.
+     */
+    private long readThreshold(ResourceResolver resolver, String modelId) {
+        long defaultThresholdHours = escalationScheduler.getDefaultThresholdHours();
+        Resource nodes = resolver.getResource(modelId + "/nodes");
+        if (nodes != null) {
+            for (Resource node : nodes.getChildren()) {
+                Resource metaData = node.getChild("metaData");
+                ValueMap step = metaData != null ? metaData.getValueMap() : null;
+                if (step != null && step.get("PROCESS", "").endsWith(ESCALATION_CHECK_PROCESS)) {
+                    return EscalationCheckProcess.thresholdHours(
+                        ProcessArgs.parse(step.get(ProcessArgs.PROCESS_ARGS, String.class)), defaultThresholdHours);
+                }
+            }
+        }
+        return defaultThresholdHours;
+    }
+
+    private static String toQuery(String[] modelIds) {
+        StringBuilder query = new StringBuilder(
+            "SELECT [jcr:path] FROM [cq:Workflow] AS w WHERE ISDESCENDANTNODE(w, '/var/workflow/instances')"
+                + " AND w.[status] = 'RUNNING' AND (");
+        for (int i = 0; i < modelIds.length; i++) {
+            if (i > 0) {
+                query.append(" OR ");
+            }
+            query.append("w.[modelId] = '").append(modelIds[i].replace("'", "''")).append('\'');
+        }
+        return query.append(')').toString();
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.event.WorkflowEvent;
+import com.adobe.granite.workflow.exec.Workflow;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory index of (payload, model) to the workflow instance that is
+ * currently running for it.
+ *
+ * Starting the same model for the same payload while an earlier instance is
+ * still running only multiplies load. Start paths call
+ * {@link #startIfAbsent} so a duplicate start returns the existing instance ID
+ * instead of spawning a new one. Entries are removed when the workflow engine
+ * reports the instance as completed or aborted (terminated); an index hit is
+ * also checked against the instance state, so a missed event or an evicted
+ * entry can never block a legitimate start.
+ *
+ * The per-key start lock is held across the workflow start, which blocks on
+ * the repository. It is a {@link ReentrantLock} rather than a monitor so
+ * virtual-thread callers (bulk and synthetic runners) unmount while they
+ * wait instead of pinning their carrier thread.
+ */
+@Component(
+    service = {InFlightWorkflowIndex.class, EventHandler.class},
+    property = {
+        EventConstants.EVENT_TOPIC + "=" + WorkflowEvent.EVENT_TOPIC
+    }
+)
+@Designate(ocd = InFlightWorkflowIndex.Config.class)
+public class InFlightWorkflowIndex implements EventHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InFlightWorkflowIndex.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    @ObjectClassDefinition(
+        name = "Example - In-Flight Workflow Index",
+        description = "Coalesces duplicate workflow starts for the same payload and model"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Maximum entries", description = "Least recently used entries are evicted")
+        int max_entries() default 10000;
+
+        @AttributeDefinition(name = "Verify on hit",
+            description = "Read the instance state before returning an existing ID")
+        boolean verify_on_hit() default true;
+    }
+
+    /**
+     * Starts a workflow and returns its ID, or null if it was not started.
+     */
+    @FunctionalInterface
+    public interface Starter {
+        String start() throws WorkflowException;
+    }
+
+    // Guarded by this
+    private Map<String, String> workflowIdsByKey = new LinkedHashMap<>();
+    private final Map<String, String> keysByWorkflowId = new HashMap<>();
+
+    // Serializes check-then-start per key without a lock object per payload
+    private final ReentrantLock[] startLocks = new ReentrantLock[LOCK_STRIPES];
+
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder staleEntries = new LongAdder();
+
+    private boolean verifyOnHit;
+
+    public InFlightWorkflowIndex() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            startLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Activate
+    protected void activate(Config config) {
+        int maxEntries = Math.max(1, config.max_entries());
+        verifyOnHit = config.verify_on_hit();
+        synchronized (this) {
+            workflowIdsByKey = new LinkedHashMap<String, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    if (size() > maxEntries) {
+                        keysByWorkflowId.remove(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+            keysByWorkflowId.clear();
+        }
+    }
+
+    /**
+     * Return the running instance for this payload and model, or start one.
+     *
+     * @param payloadPath The workflow payload
+     * @param modelPath The workflow model path
+     * @param workflowSession Session used to verify an existing instance
+     * @param starter Starts the workflow if none is running
+     * @return Existing or new workflow ID, or null if the starter did not start one
+     * @throws WorkflowException if the starter fails
+     */
+    public String startIfAbsent(String payloadPath, String modelPath, WorkflowSession workflowSession,
+                                Starter starter) throws WorkflowException {
+        String key = key(payloadPath, modelPath);
+        ReentrantLock startLock = startLocks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+        startLock.lock();
+        try {
+            String existingId = get(key);
+            if (existingId != null) {
+                if (!verifyOnHit || isInFlight(workflowSession, existingId)) {
+                    coalesced.increment();
+                    LOG.debug("Coalesced duplicate start of {} for {} into {}", modelPath, payloadPath, existingId);
+                    return existingId;
+                }
+                staleEntries.increment();
+                remove(existingId);
+            }
+
+            String workflowId = starter.start();
+            if (workflowId != null) {
+                put(key, workflowId);
+            }
+            return workflowId;
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    /**
+     * Forget an instance, e.g. right after terminating it.
+     *
+     * @param workflowId The workflow instance ID
+     */
+    public synchronized void remove(String workflowId) {
+        String key = keysByWorkflowId.remove(workflowId);
+        if (key != null) {
+            workflowIdsByKey.remove(key);
+        }
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        Object type = event.getProperty(WorkflowEvent.EVENT_TYPE);
+        if (WorkflowEvent.WORKFLOW_COMPLETED_EVENT.equals(type) || WorkflowEvent.WORKFLOW_ABORTED_EVENT.equals(type)) {
+            Object workflowId = event.getProperty(WorkflowEvent.WORKFLOW_INSTANCE_ID);
+            if (workflowId != null) {
+                remove(workflowId.toString());
+            }
+        }
+    }
+
+    private boolean isInFlight(WorkflowSession workflowSession, String workflowId) {
+        try {
+            Workflow workflow = workflowSession.getWorkflow(workflowId);
+            if (workflow == null) {
+                return false;
+            }
+            String state = workflow.getState();
+            return "RUNNING".equals(state) || "SUSPENDED".equals(state);
+        } catch (WorkflowException e) {
+            LOG.debug("Could not verify workflow {}, treating as finished", workflowId, e);
+            return false;
+        }
+    }
+
+    private synchronized String get(String key) {
+        return workflowIdsByKey.get(key);
+    }
+
+    private synchronized void put(String key, String workflowId) {
+        workflowIdsByKey.put(key, workflowId);
+        keysByWorkflowId.put(workflowId, key);
+    }
+
+    private static String key(String payloadPath, String modelPath) {
+        return modelPath + '|' + payloadPath;
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    public synchronized int getSize() {
+        return workflowIdsByKey.size();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getStaleEntryCount() {
+        return staleEntries.sum();
+    }
+}
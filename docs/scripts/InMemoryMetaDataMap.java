@@ -0,0 +1,84 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.metadata.MetaDataMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plain in-memory {@link MetaDataMap}.
+ *
+ * Stands in for the engine's persisted metadata maps when workflow process
+ * steps are executed outside a real workflow instance (benchmarks, tests,
+ * bulk reprocessing). Typed reads convert between the number types, strings
+ * and booleans the same way the engine's map does for the common cases.
+ */
+public class InMemoryMetaDataMap extends HashMap<String, Object> implements MetaDataMap {
+
+    private static final long serialVersionUID = 1L;
+
+    public InMemoryMetaDataMap() {
+        super();
+    }
+
+    public InMemoryMetaDataMap(Map<String, Object> values) {
+        super(values);
+    }
+
+    @Override
+    public <T> T get(String name, Class<T> type) {
+        return convert(get(name), type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String name, T defaultValue) {
+        if (defaultValue == null) {
+            return (T) get(name);
+        }
+        T value = get(name, (Class<T>) defaultValue.getClass());
+        return value != null ? value : defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T convert(Object value, Class<T> type) {
+        if (value == null || type.isInstance(value)) {
+            return (T) value;
+        }
+        if (type == String.class) {
+            return (T) value.toString();
+        }
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (type == Integer.class) {
+                return (T) Integer.valueOf(number.intValue());
+            }
+            if (type == Long.class) {
+                return (T) Long.valueOf(number.longValue());
+            }
+            if (type == Double.class) {
+                return (T) Double.valueOf(number.doubleValue());
+            }
+        }
+        if (value instanceof String) {
+            String text = (String) value;
+            try {
+                if (type == Integer.class) {
+                    return (T) Integer.valueOf(text.trim());
+                }
+                if (type == Long.class) {
+                    return (T) Long.valueOf(text.trim());
+                }
+                if (type == Double.class) {
+                    return (T) Double.valueOf(text.trim());
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (type == Boolean.class) {
+                return (T) Boolean.valueOf(text.trim());
+            }
+        }
+        return null;
+    }
+}
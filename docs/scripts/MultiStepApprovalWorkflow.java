@@ -24,6 +24,7 @@ import java.util.concurrent.TimeUnit;
  * 1. HierarchicalApprovalChooser - Routes to appropriate approvers based on level
  * 2. ApprovalDecisionRecorder - Records approval/rejection decisions
  * 3. EscalationCheckProcess - Checks for approval timeouts and escalates
+ *    (deadlines are fired by EscalationScheduler, so the check need not be re-run)
  *
  * Workflow Model Structure:
  * [Start] → [Initial Review] → [Dept Approval] → [Final Approval] → [Publish] → [End]
@@ -45,10 +46,20 @@ public class HierarchicalApprovalChooser implements ParticipantStepChooser {
 
     private static final Logger LOG = LoggerFactory.getLogger(HierarchicalApprovalChooser.class);
 
+    @Reference
+    private ApproverGroupResolver approverGroupResolver;
+
+    @Reference
+    private EscalationScheduler escalationScheduler;
+
+    @Reference
+    private WorkflowMetrics metrics;
+
     @Override
     public String getParticipant(WorkItem workItem, WorkflowSession workflowSession,
                                  MetaDataMap metaDataMap) throws WorkflowException {
 
+        WorkflowMetrics.Execution execution = metrics.start("hierarchicalApprovalChooser");
         try {
             // Get current approval level from workflow metadata
             MetaDataMap wfMetadata = workItem.getWorkflow().getMetaDataMap();
@@ -56,76 +67,39 @@ public class HierarchicalApprovalChooser implements ParticipantStepChooser {
 
             // Get content path for department routing
             String payloadPath = workItem.getWorkflowData().getPayload().toString();
-            String department = extractDepartment(payloadPath);
 
-            // Determine approver based on level and department
-            String approverGroup = getApproverGroup(approvalLevel, department);
+            // Determine approver based on level and department (cached, verified group)
+            ResourceResolver resolver = workflowSession.adaptTo(ResourceResolver.class);
+            String approverGroup = approverGroupResolver.resolve(resolver, payloadPath, approvalLevel);
+            execution.phase(WorkflowMetrics.Phase.RESOLVE);
 
             // Record step start time for escalation tracking
-            wfMetadata.put("currentStepStartTime", new Date());
+            Date stepStartTime = new Date();
+            wfMetadata.put("currentStepStartTime", stepStartTime);
             wfMetadata.put("currentStepLevel", approvalLevel);
 
+            // Escalate exactly when due instead of polling with EscalationCheckProcess;
+            // honours the step's THRESHOLD_HOURS like the check step and the sweep
+            long thresholdHours = EscalationCheckProcess.thresholdHours(ProcessArgs.of(metaDataMap),
+                escalationScheduler.getDefaultThresholdHours());
+            escalationScheduler.schedule(workItem.getWorkflow().getId(), payloadPath, approvalLevel,
+                stepStartTime.getTime(), thresholdHours);
+
             // Increment approval level for next step
             wfMetadata.put("approvalLevel", approvalLevel + 1);
 
+            execution.phase(WorkflowMetrics.Phase.PROCESS);
+
             LOG.info("Routing to {} for level {} approval of {}", approverGroup, approvalLevel, payloadPath);
             return approverGroup;
 
         } catch (Exception e) {
             LOG.error("Failed to determine approver", e);
+            execution.fail();
             return "administrators"; // Fallback
-        }
-    }
 
-    /**
-     * Extract department from content path.
-     * Customize this based on your content structure.
-     *
-     * Examples:
-     * /content/mysite/marketing/campaigns/page → marketing
-     * /content/mysite/hr/policies/page → hr
-     */
-    private String extractDepartment(String path) {
-        if (path == null) {
-            return "default";
-        }
-        String[] segments = path.split("/");
-        if (segments.length > 3) {
-            String department = segments[3];
-            return sanitizeGroupName(department);
-        }
-        return "default";
-    }
-
-    /**
-     * Sanitize group name to prevent injection attacks.
-     * Only allows alphanumeric characters, hyphens, and underscores.
-     */
-    private String sanitizeGroupName(String input) {
-        if (input == null) {
-            return "default";
-        }
-        return input.replaceAll("[^a-zA-Z0-9-_]", "");
-    }
-
-    /**
-     * Determine approver group based on approval level and department.
-     *
-     * Level 1: Department reviewers (peer review)
-     * Level 2: Department managers (management approval)
-     * Level 3: Content governance (final approval)
-     */
-    private String getApproverGroup(int level, String department) {
-        String sanitizedDept = sanitizeGroupName(department);
-        switch (level) {
-            case 1:
-                return sanitizedDept + "-reviewers";
-            case 2:
-                return sanitizedDept + "-managers";
-            case 3:
-                return "content-governance";
-            default:
-                return "administrators";
+        } finally {
+            execution.end();
         }
     }
 }
@@ -144,19 +118,26 @@ public class ApprovalDecisionRecorder implements WorkflowProcess {
 
     private static final Logger LOG = LoggerFactory.getLogger(ApprovalDecisionRecorder.class);
 
+    @Reference
+    private EscalationScheduler escalationScheduler;
+
+    @Reference
+    private WorkflowMetrics metrics;
+
     @Override
     public void execute(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap)
             throws WorkflowException {
 
+        WorkflowMetrics.Execution execution = metrics.start("approvalDecisionRecorder");
         try {
             ResourceResolver resolver = workflowSession.adaptTo(ResourceResolver.class);
             MetaDataMap wfMetadata = workItem.getWorkflow().getMetaDataMap();
 
             // Get decision from process arguments
             // Format: DECISION:approve|reject,COMMENTS:optional comments
-            String args = metaDataMap.get("PROCESS_ARGS", "");
-            String decision = extractArg(args, "DECISION", "unknown");
-            String comments = extractArg(args, "COMMENTS", "");
+            ProcessArgs args = ProcessArgs.of(metaDataMap);
+            String decision = args.get("DECISION", "unknown");
+            String comments = args.get("COMMENTS", "");
 
             // Get approver information
             String approver = workItem.getCurrentAssignee();
@@ -164,8 +145,9 @@ public class ApprovalDecisionRecorder implements WorkflowProcess {
                 approver = workItem.getWorkflow().getInitiator();
             }
 
-            // Record the decision
+            // Record the decision; the step is no longer waiting, so drop its escalation deadline
             recordApprovalDecision(wfMetadata, workItem, approver, decision, comments);
+            escalationScheduler.cancel(workItem.getWorkflow().getId());
 
             // Set route for workflow model (determines next step)
             if ("reject".equalsIgnoreCase(decision)) {
@@ -179,16 +161,16 @@ public class ApprovalDecisionRecorder implements WorkflowProcess {
 
         } catch (Exception e) {
             LOG.error("Failed to record approval decision", e);
+            execution.fail();
             throw new WorkflowException("Decision recording failed", e);
+
+        } finally {
+            execution.end();
         }
     }
 
     private void recordApprovalDecision(MetaDataMap metadata, WorkItem workItem,
                                          String approver, String decision, String comments) {
-        // Build approval history
-        String historyKey = "approvalHistory";
-        String existingHistory = metadata.get(historyKey, "");
-
         String stepTitle = "Unknown Step";
         try {
             stepTitle = workItem.getNode().getTitle();
@@ -196,35 +178,17 @@ public class ApprovalDecisionRecorder implements WorkflowProcess {
             LOG.warn("Could not get step title", e);
         }
 
-        String newEntry = String.format("[%tF %tT] %s: %s by %s%s",
-            new Date(), new Date(),
-            stepTitle,
-            decision.toUpperCase(),
-            approver,
-            comments.isEmpty() ? "" : " - " + comments
-        );
-
-        String updatedHistory = existingHistory.isEmpty() ? newEntry : existingHistory + "\n" + newEntry;
-        metadata.put(historyKey, updatedHistory);
+        // Append to the approval history (one new entry, existing entries untouched)
+        ApprovalHistory.Entry entry = new ApprovalHistory.Entry(
+            System.currentTimeMillis(), stepTitle, decision.toUpperCase(), approver, comments);
+        ApprovalHistory.append(metadata, entry);
 
         // Store latest decision info
         metadata.put("lastApprover", approver);
         metadata.put("lastDecision", decision);
         metadata.put("lastDecisionTime", new Date());
 
-        LOG.debug("Recorded approval: {}", newEntry);
-    }
-
-    private String extractArg(String args, String key, String defaultValue) {
-        if (args == null || args.isEmpty()) {
-            return defaultValue;
-        }
-        for (String part : args.split(",")) {
-            if (part.startsWith(key + ":")) {
-                return part.substring(key.length() + 1).trim();
-            }
-        }
-        return defaultValue;
+        LOG.debug("Recorded approval: {}", entry);
     }
 }
 
@@ -242,18 +206,44 @@ public class EscalationCheckProcess implements WorkflowProcess {
 
     private static final Logger LOG = LoggerFactory.getLogger(EscalationCheckProcess.class);
 
-    // Default escalation threshold (can be overridden via process args)
-    private static final long DEFAULT_ESCALATION_HOURS = 48;
+    @Reference
+    private EscalationScheduler escalationScheduler;
+
+    @Reference
+    private ApprovalRoutingTable routingTable;
+
+    @Reference
+    private WorkflowMetrics metrics;
 
     @Override
     public void execute(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap)
             throws WorkflowException {
+        WorkflowMetrics.Execution execution = metrics.start("escalationCheck");
+        try {
+            checkEscalation(workItem, workflowSession, metaDataMap);
+        } catch (RuntimeException e) {
+            execution.fail();
+            throw e;
+        } finally {
+            execution.end();
+        }
+    }
 
+    private void checkEscalation(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap) {
         MetaDataMap wfMetadata = workItem.getWorkflow().getMetaDataMap();
 
-        // Get configurable threshold from process args
-        String args = metaDataMap.get("PROCESS_ARGS", "");
-        long thresholdHours = parseThreshold(args, DEFAULT_ESCALATION_HOURS);
+        // Threshold from process args, else the scheduler's configured default
+        long thresholdHours = thresholdHours(ProcessArgs.of(metaDataMap),
+            escalationScheduler.getDefaultThresholdHours());
+
+        String workflowId = workItem.getWorkflow().getId();
+        String payloadPath = workItem.getWorkflowData().getPayload().toString();
+        int currentLevel = wfMetadata.get("currentStepLevel", 1);
+
+        if (ApprovalEscalation.isEscalated(wfMetadata)) {
+            LOG.debug("Workflow {} already escalated", workflowId);
+            return;
+        }
 
         // Get step start time
         Date stepStartTime = wfMetadata.get("currentStepStartTime", Date.class);
@@ -262,8 +252,7 @@ public class EscalationCheckProcess implements WorkflowProcess {
             stepStartTime = new Date();
             wfMetadata.put("currentStepStartTime", stepStartTime);
             wfMetadata.put("escalated", false);
-            LOG.debug("Initialized escalation tracking for workflow: {}", workItem.getWorkflow().getId());
-            return;
+            LOG.debug("Initialized escalation tracking for workflow: {}", workflowId);
         }
 
         // Calculate time elapsed
@@ -271,59 +260,35 @@ public class EscalationCheckProcess implements WorkflowProcess {
             System.currentTimeMillis() - stepStartTime.getTime()
         );
 
-        if (hoursElapsed >= thresholdHours && !wfMetadata.get("escalated", false)) {
+        if (hoursElapsed >= thresholdHours) {
             LOG.warn("Workflow {} exceeded {} hour threshold (elapsed: {} hours), escalating",
-                workItem.getWorkflow().getId(), thresholdHours, hoursElapsed);
-
-            // Mark for escalation
-            wfMetadata.put("escalated", true);
-            wfMetadata.put("escalationTime", new Date());
-            wfMetadata.put("escalationReason",
-                String.format("Approval timeout: %d hours exceeded threshold of %d hours",
-                    hoursElapsed, thresholdHours));
-
-            // Get current approval level for escalation target
-            int currentLevel = wfMetadata.get("currentStepLevel", 1);
-            wfMetadata.put("escalationTarget", getEscalationTarget(currentLevel));
-
-            // Record in history
-            String history = wfMetadata.get("approvalHistory", "");
-            String escalationEntry = String.format("[%tF %tT] ESCALATION: Timeout after %d hours",
-                new Date(), new Date(), hoursElapsed);
-            wfMetadata.put("approvalHistory", history + "\n" + escalationEntry);
-
-            LOG.info("Escalation recorded for workflow: {}", workItem.getWorkflow().getId());
-        } else {
-            LOG.debug("No escalation needed - {} hours elapsed of {} hour threshold",
-                hoursElapsed, thresholdHours);
-        }
-    }
+                workflowId, thresholdHours, hoursElapsed);
 
-    private long parseThreshold(String args, long defaultValue) {
-        if (args != null && !args.isEmpty()) {
-            try {
-                for (String part : args.split(",")) {
-                    if (part.startsWith("THRESHOLD_HOURS:")) {
-                        return Long.parseLong(part.substring("THRESHOLD_HOURS:".length()).trim());
-                    }
-                }
-            } catch (NumberFormatException e) {
-                LOG.warn("Invalid threshold in process args, using default: {}", defaultValue);
-            }
+            // Escalate to the routing table's target for the current approval level
+            String contentType = routingTable.getContentType(
+                workflowSession.adaptTo(ResourceResolver.class), payloadPath);
+            ApprovalEscalation.apply(wfMetadata, hoursElapsed, thresholdHours,
+                routingTable.getEscalationTarget(payloadPath, contentType, currentLevel));
+            escalationScheduler.cancel(workflowId);
+
+            LOG.info("Escalation recorded for workflow: {}", workflowId);
+        } else {
+            // Not due yet: hand the deadline to the scheduler rather than re-running this step
+            escalationScheduler.schedule(workflowId, payloadPath, currentLevel,
+                stepStartTime.getTime(), thresholdHours);
+            LOG.debug("Escalation of {} scheduled - {} hours elapsed of {} hour threshold",
+                workflowId, hoursElapsed, thresholdHours);
         }
-        return defaultValue;
     }
 
-    private String getEscalationTarget(int currentLevel) {
-        // Escalate to the next level's approvers or administrators
-        switch (currentLevel) {
-            case 1:
-                return "department-managers";
-            case 2:
-                return "content-governance";
-            default:
-                return "administrators";
+    /**
+     * THRESHOLD_HOURS argument of the step, shared with {@link EscalationSweepJob}.
+     */
+    static long thresholdHours(ProcessArgs args, long defaultValue) {
+        if (args.isInvalidNumber("THRESHOLD_HOURS")) {
+            LOG.warn("Invalid threshold in process args, using default: {}", defaultValue);
         }
+        return args.getLong("THRESHOLD_HOURS", defaultValue);
     }
 }
 
@@ -341,15 +306,27 @@ public class ApprovalCompletionNotifier implements WorkflowProcess {
 
     private static final Logger LOG = LoggerFactory.getLogger(ApprovalCompletionNotifier.class);
 
+    @Reference
+    private WorkflowMetrics metrics;
+
     @Override
     public void execute(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap)
             throws WorkflowException {
+        WorkflowMetrics.Execution execution = metrics.start("approvalCompletionNotifier");
+        try {
+            notifyCompletion(workItem);
+        } catch (RuntimeException e) {
+            execution.fail();
+            throw e;
+        } finally {
+            execution.end();
+        }
+    }
 
+    private void notifyCompletion(WorkItem workItem) {
         MetaDataMap wfMetadata = workItem.getWorkflow().getMetaDataMap();
         String payload = workItem.getWorkflowData().getPayload().toString();
 
-        // Get approval history
-        String approvalHistory = wfMetadata.get("approvalHistory", "No history available");
         String initiator = workItem.getWorkflow().getInitiator();
         boolean wasEscalated = wfMetadata.get("escalated", false);
 
@@ -367,7 +344,16 @@ public class ApprovalCompletionNotifier implements WorkflowProcess {
         notification.append("Content: ").append(payload).append("\n");
         notification.append("Outcome: ").append(approved ? "APPROVED" : "REJECTED").append("\n");
         notification.append("Escalated: ").append(wasEscalated ? "Yes" : "No").append("\n");
-        notification.append("\nApproval History:\n").append(approvalHistory);
+
+        notification.append("\nApproval History:\n");
+
+        // Rendered entry by entry through the reader API, nothing is copied
+        int historyStart = notification.length();
+        ApprovalHistory.stream(wfMetadata)
+            .forEach(entry -> notification.append(entry.format()).append("\n"));
+        if (notification.length() == historyStart) {
+            notification.append("No history available");
+        }
 
         // Store notification for potential email service integration
         wfMetadata.put("completionNotification", notification.toString());
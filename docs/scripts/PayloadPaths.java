@@ -0,0 +1,96 @@
+package com.example.core.workflows;
+
+/**
+ * Payload path helpers for workflow components.
+ *
+ * Components run once per work item, so parsing the payload path with
+ * {@code split("/")} or sanitizing with {@code replaceAll} (a regex compiled on
+ * every call) shows up as garbage at high volume. These helpers scan the
+ * characters in place: no arrays, no regexes, and no new string unless the
+ * result differs from the input.
+ *
+ * Segments are the non-empty names between slashes, counted from 0:
+ * for /content/mysite/marketing/page, segment 0 is "content" and segment 2
+ * is "marketing". The same works for other slash-separated values, e.g.
+ * segment 0 of "image/jpeg" is "image".
+ */
+public final class PayloadPaths {
+
+    private PayloadPaths() {
+    }
+
+    /**
+     * @param path A slash-separated path, may be null
+     * @param index 0-based segment index
+     * @return The segment, or null if the path has fewer segments
+     */
+    public static String segment(String path, int index) {
+        if (path == null || index < 0) {
+            return null;
+        }
+        int length = path.length();
+        int current = 0;
+        int start = 0;
+        while (start < length) {
+            while (start < length && path.charAt(start) == '/') {
+                start++;
+            }
+            if (start == length) {
+                return null;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (current == index) {
+                return start == 0 && end == length ? path : path.substring(start, end);
+            }
+            current++;
+            start = end;
+        }
+        return null;
+    }
+
+    /**
+     * Sanitize a group name to prevent injection attacks.
+     * Only allows alphanumeric characters, hyphens, and underscores.
+     *
+     * @return The input itself when it is already clean, otherwise a copy
+     *         without the disallowed characters; null for null input
+     */
+    public static String sanitizeGroupName(String input) {
+        if (input == null) {
+            return null;
+        }
+        int length = input.length();
+        int firstInvalid = 0;
+        while (firstInvalid < length && isGroupNameChar(input.charAt(firstInvalid))) {
+            firstInvalid++;
+        }
+        if (firstInvalid == length) {
+            return input;
+        }
+        StringBuilder sanitized = new StringBuilder(length - 1);
+        sanitized.append(input, 0, firstInvalid);
+        for (int i = firstInvalid + 1; i < length; i++) {
+            char c = input.charAt(i);
+            if (isGroupNameChar(c)) {
+                sanitized.append(c);
+            }
+        }
+        return sanitized.toString();
+    }
+
+    /**
+     * @return true if path equals ancestor or lies below it
+     */
+    public static boolean isSameOrDescendant(String path, String ancestor) {
+        return path.equals(ancestor)
+            || (path.startsWith(ancestor) && path.charAt(ancestor.length()) == '/');
+    }
+
+    private static boolean isGroupNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+            || c == '-' || c == '_';
+    }
+}
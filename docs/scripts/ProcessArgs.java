@@ -0,0 +1,165 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.metadata.MetaDataMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parsed workflow process arguments ({@code PROCESS_ARGS}).
+ *
+ * Arguments are {@code KEY:value} pairs separated by commas, e.g.
+ * {@code DECISION:approve,COMMENTS:Looks good}. A step's argument string only
+ * changes when the model is edited, so parsed arguments are cached by the raw
+ * string and shared by every execution of every step configured the same way:
+ * hot steps no longer split strings or parse numbers per execution.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class ProcessArgs {
+
+    public static final String PROCESS_ARGS = "PROCESS_ARGS";
+
+    public static final ProcessArgs EMPTY = new ProcessArgs("", Collections.emptyMap(), Collections.emptyMap(), false);
+
+    // Distinct argument strings come from step configurations, so a few hundred at most
+    private static final int MAX_CACHED = 1024;
+
+    private static final ConcurrentMap<String, ProcessArgs> CACHE = new ConcurrentHashMap<>();
+
+    private final String raw;
+    private final Map<String, String> values;
+    private final Map<String, Long> numbers;
+    // A non-empty segment had no KEY: prefix
+    private final boolean malformed;
+
+    private ProcessArgs(String raw, Map<String, String> values, Map<String, Long> numbers, boolean malformed) {
+        this.raw = raw;
+        this.values = values;
+        this.numbers = numbers;
+        this.malformed = malformed;
+    }
+
+    /**
+     * @param metaDataMap The step's MetaDataMap as passed to execute()
+     * @return The parsed PROCESS_ARGS of the step
+     */
+    public static ProcessArgs of(MetaDataMap metaDataMap) {
+        return parse(metaDataMap.get(PROCESS_ARGS, String.class));
+    }
+
+    /**
+     * @param raw Argument string, may be null
+     * @return The parsed arguments, from the cache when this string was seen before
+     */
+    public static ProcessArgs parse(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return EMPTY;
+        }
+        ProcessArgs args = CACHE.get(raw);
+        if (args == null) {
+            args = doParse(raw);
+            if (CACHE.size() < MAX_CACHED) {
+                CACHE.putIfAbsent(raw, args);
+            }
+        }
+        return args;
+    }
+
+    private static ProcessArgs doParse(String raw) {
+        Map<String, String> values = new HashMap<>();
+        Map<String, Long> numbers = new HashMap<>();
+        boolean malformed = false;
+        int start = 0;
+        while (start <= raw.length()) {
+            int end = raw.indexOf(',', start);
+            if (end < 0) {
+                end = raw.length();
+            }
+            int separator = raw.indexOf(':', start);
+            String key = separator >= start && separator < end ? raw.substring(start, separator).trim() : "";
+            if (!key.isEmpty()) {
+                String value = raw.substring(separator + 1, end).trim();
+                // First occurrence wins, as with the previous per-call parsing
+                if (values.putIfAbsent(key, value) == null) {
+                    try {
+                        numbers.put(key, Long.valueOf(value));
+                    } catch (NumberFormatException e) {
+                        // Not a number; only available as a string
+                    }
+                }
+            } else if (!raw.substring(start, end).isBlank()) {
+                // Kept out of the values but remembered, so an allowlist check rejects it
+                malformed = true;
+            }
+            start = end + 1;
+        }
+        return new ProcessArgs(raw, Collections.unmodifiableMap(values), Collections.unmodifiableMap(numbers),
+            malformed);
+    }
+
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = values.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * @return The value as a long, or the default if missing or not a number
+     */
+    public long getLong(String key, long defaultValue) {
+        Long value = numbers.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * @return The value as an int, or the default if missing or not a number in int range
+     */
+    public int getInt(String key, int defaultValue) {
+        Long value = numbers.get(key);
+        return value != null && value == value.intValue() ? value.intValue() : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    /**
+     * @return true if the value is present but not a number, i.e. misconfigured for a numeric argument
+     */
+    public boolean isInvalidNumber(String key) {
+        return values.containsKey(key) && !numbers.containsKey(key);
+    }
+
+    /**
+     * Allowlist check for the "Secure Process Arguments" practice. Empty
+     * segments (e.g. a trailing comma) are ignored; any other segment without
+     * a {@code KEY:} prefix, such as {@code FOO} or {@code :value}, fails it.
+     *
+     * @return true if every segment parsed and every argument key is in the allowed set
+     */
+    public boolean hasOnly(Set<String> allowedKeys) {
+        return !malformed && allowedKeys.containsAll(values.keySet());
+    }
+
+    public Set<String> keys() {
+        return values.keySet();
+    }
+
+    public String raw() {
+        return raw;
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
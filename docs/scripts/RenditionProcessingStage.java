@@ -0,0 +1,267 @@
+package com.example.core.workflows;
+
+import com.day.cq.dam.api.Rendition;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs per-rendition work of an asset process in parallel.
+ *
+ * The work for each rendition (validation, watermark checks, CDN pre-warming)
+ * runs on a shared, bounded pool. Each asset keeps at most a configured number
+ * of renditions in flight, so one asset with 30 renditions cannot take the
+ * whole pool. The calling workflow thread waits for all results or the
+ * per-asset timeout. It then writes the aggregated results itself, in one
+ * commit.
+ *
+ * Resolvers and sessions are not thread-safe, so tasks receive a
+ * {@link RenditionInfo} captured on the calling thread, not the rendition.
+ * Tasks that need the repository must use their own resolver (e.g. a
+ * {@link WorkflowSessionPool} lease), and they must never write: writing is
+ * left to the caller. When the pool's queue is full, the calling thread runs
+ * the task itself, so overload degrades to sequential processing instead of
+ * failing.
+ */
+@Component(service = RenditionProcessingStage.class)
+@Designate(ocd = RenditionProcessingStage.Config.class)
+public class RenditionProcessingStage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenditionProcessingStage.class);
+
+    @ObjectClassDefinition(
+        name = "Example - Rendition Processing Stage",
+        description = "Bounded parallel processing of asset renditions"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Threads", description = "Shared by all assets being processed")
+        int threads() default 8;
+
+        @AttributeDefinition(name = "Queue capacity",
+            description = "Pending rendition tasks; beyond it the workflow thread runs them itself")
+        int queue_capacity() default 256;
+
+        @AttributeDefinition(name = "Renditions in flight per asset")
+        int max_per_asset() default 4;
+
+        @AttributeDefinition(name = "Timeout per asset (ms)",
+            description = "Renditions not done by then are cancelled and reported as timed out")
+        long timeout_millis() default 30000;
+    }
+
+    /**
+     * Work done for one rendition.
+     *
+     * @param <R> Result type
+     */
+    @FunctionalInterface
+    public interface RenditionTask<R> {
+        R process(RenditionInfo rendition) throws Exception;
+    }
+
+    /**
+     * What a task may know about a rendition, read on the calling thread.
+     */
+    public static final class RenditionInfo {
+
+        private final String name;
+        private final String path;
+        private final String mimeType;
+        private final long size;
+
+        private RenditionInfo(Rendition rendition) {
+            this.name = rendition.getName();
+            this.path = rendition.getPath();
+            this.mimeType = rendition.getMimeType();
+            this.size = rendition.getSize();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Aggregated outcome for one asset.
+     *
+     * @param <R> Result type
+     */
+    public static final class Results<R> {
+
+        private final Map<String, R> results;
+        private final Map<String, String> failures;
+        private final boolean timedOut;
+        private final long durationMillis;
+
+        private Results(Map<String, R> results, Map<String, String> failures, boolean timedOut,
+                        long durationMillis) {
+            this.results = Collections.unmodifiableMap(results);
+            this.failures = Collections.unmodifiableMap(failures);
+            this.timedOut = timedOut;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * @return Results by rendition name, in rendition order
+         */
+        public Map<String, R> getResults() {
+            return results;
+        }
+
+        /**
+         * @return Failure message by rendition name, including renditions that timed out
+         */
+        public Map<String, String> getFailures() {
+            return failures;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+
+    private ThreadPoolExecutor executor;
+    private int maxPerAsset;
+    private long timeoutMillis;
+
+    @Activate
+    protected void activate(Config config) {
+        maxPerAsset = Math.max(1, config.max_per_asset());
+        timeoutMillis = Math.max(1, config.timeout_millis());
+
+        int threads = Math.max(1, config.threads());
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, config.queue_capacity())),
+            runnable -> {
+                Thread thread = new Thread(runnable, "rendition-processing-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Run the task for every rendition and wait for the results.
+     *
+     * @param renditions The asset's renditions
+     * @param task The per-rendition work
+     * @return Results and failures by rendition name
+     */
+    public <R> Results<R> process(List<Rendition> renditions, RenditionTask<R> task) {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMillis;
+
+        List<RenditionInfo> infos = new ArrayList<>(renditions.size());
+        for (Rendition rendition : renditions) {
+            infos.add(new RenditionInfo(rendition));
+        }
+
+        ExecutorCompletionService<R> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<R>, RenditionInfo> inFlight = new IdentityHashMap<>();
+        Map<String, R> byName = new LinkedHashMap<>();
+        Map<String, String> failures = new LinkedHashMap<>();
+        boolean timedOut = false;
+        int next = 0;
+
+        try {
+            while (next < infos.size() || !inFlight.isEmpty()) {
+                // Keep at most max_per_asset renditions of this asset in flight
+                while (next < infos.size() && inFlight.size() < maxPerAsset) {
+                    RenditionInfo info = infos.get(next++);
+                    inFlight.put(completion.submit(() -> task.process(info)), info);
+                }
+                Future<R> done = completion.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    timedOut = true;
+                    break;
+                }
+                RenditionInfo info = inFlight.remove(done);
+                try {
+                    byName.put(info.getName(), done.get());
+                } catch (ExecutionException e) {
+                    LOG.warn("Processing rendition {} failed", info.getPath(), e.getCause());
+                    failures.put(info.getName(), String.valueOf(e.getCause().getMessage()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timedOut = true;
+        }
+
+        if (timedOut) {
+            for (Map.Entry<Future<R>, RenditionInfo> entry : inFlight.entrySet()) {
+                entry.getKey().cancel(true);
+                failures.put(entry.getValue().getName(), "timed out");
+            }
+            for (int i = next; i < infos.size(); i++) {
+                failures.put(infos.get(i).getName(), "not started");
+            }
+            LOG.warn("Rendition processing timed out after {} ms: {} of {} rendition(s) unfinished",
+                timeoutMillis, inFlight.size() + infos.size() - next, infos.size());
+        }
+
+        // Back in rendition order, whatever the completion order
+        Map<String, R> results = new LinkedHashMap<>();
+        for (RenditionInfo info : infos) {
+            if (byName.containsKey(info.getName())) {
+                results.put(info.getName(), byName.get(info.getName()));
+            }
+        }
+        return new Results<>(results, failures, timedOut, System.currentTimeMillis() - start);
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+}
@@ -0,0 +1,629 @@
+package com.example.core.workflows;
+
+import com.day.cq.dam.api.Rendition;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Derives metadata from an asset's binary in a single streaming pass.
+ *
+ * The rendition stream is read once, chunk by chunk into one reused buffer,
+ * and every chunk is handed to all {@link ContentExtractor}s that accept the
+ * asset's MIME type. Memory use is the buffer plus the bounded state of each
+ * extractor, whatever the size of the asset, so multi-gigabyte videos are
+ * inspected as safely as thumbnails. Reading stops at EOF, once no extractor
+ * wants more content, or when the per-asset byte or time budget is used up;
+ * in the last case results that need the whole content are left out.
+ *
+ * Built-in extractors (property names in the results):
+ * - SHA-256 of the content: {@code contentSha256}
+ * - PNG, GIF and JPEG dimensions from the headers: {@code contentWidth}, {@code contentHeight}
+ * - PDF page count, counting page objects (approximate for PDFs with compressed
+ *   object streams): {@code contentPageCount}
+ * - Embedded XMP packet: {@code contentXmpPresent}, {@code contentXmpCreatorTool},
+ *   {@code contentXmpDocumentId}
+ *
+ * Further extractors are picked up as {@link ContentExtractor} services.
+ */
+@Component(service = StreamingContentInspector.class)
+@Designate(ocd = StreamingContentInspector.Config.class)
+public class StreamingContentInspector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingContentInspector.class);
+
+    @ObjectClassDefinition(
+        name = "Example - Streaming Content Inspector",
+        description = "Extracts metadata from asset binaries in one bounded streaming pass"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Buffer size", description = "Bytes read per chunk")
+        int buffer_size() default 65536;
+
+        @AttributeDefinition(name = "Byte budget",
+            description = "Stop reading an asset after this many bytes (checksums are then omitted)")
+        long max_bytes() default 1073741824L;
+
+        @AttributeDefinition(name = "Time budget (ms)", description = "Stop reading an asset after this long")
+        long max_millis() default 30000;
+
+        @AttributeDefinition(name = "XMP packet limit", description = "Larger XMP packets are not parsed")
+        int xmp_max_bytes() default 262144;
+    }
+
+    /**
+     * Outcome of inspecting one asset.
+     */
+    public static final class Result {
+
+        static final Result EMPTY = new Result(Collections.emptyMap(), 0, false, 0);
+
+        private final Map<String, Object> properties;
+        private final long bytesRead;
+        private final boolean complete;
+        private final long durationMillis;
+
+        Result(Map<String, Object> properties, long bytesRead, boolean complete, long durationMillis) {
+            this.properties = properties;
+            this.bytesRead = bytesRead;
+            this.complete = complete;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * @return Extracted metadata, ready to be stored on the asset
+         */
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return false if the content could not be read or a budget was exceeded
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+        policyOption = ReferencePolicyOption.GREEDY)
+    private final List<ContentExtractor> extensions = new CopyOnWriteArrayList<>();
+
+    private final LongAdder inspected = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder budgetExceeded = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private volatile List<ContentExtractor> builtIns;
+    private volatile int bufferSize;
+    private volatile long maxBytes;
+    private volatile long maxNanos;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        bufferSize = Math.max(4096, config.buffer_size());
+        maxBytes = Math.min(Math.max(0, config.max_bytes()), Long.MAX_VALUE - 1);
+        maxNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.max_millis()));
+        builtIns = List.of(new Sha256Extractor(), new ImageDimensionsExtractor(), new PdfPageCountExtractor(),
+            new XmpExtractor(Math.max(1024, config.xmp_max_bytes())));
+    }
+
+    /**
+     * Inspect a rendition (normally the original).
+     *
+     * @param rendition The rendition to read, may be null
+     * @param mimeType MIME type of the asset; the rendition's when null
+     * @return The extracted metadata; empty if nothing could be read
+     */
+    public Result inspect(Rendition rendition, String mimeType) {
+        if (rendition == null) {
+            return Result.EMPTY;
+        }
+        String type = mimeType != null ? mimeType : rendition.getMimeType();
+        long size = rendition.getSize();
+
+        List<ContentExtractor.Inspection> opened = new ArrayList<>();
+        open(builtIns, type, size, opened);
+        open(extensions, type, size, opened);
+        if (opened.isEmpty()) {
+            return Result.EMPTY;
+        }
+
+        List<ContentExtractor.Inspection> active = new ArrayList<>(opened);
+        long start = System.nanoTime();
+        long read = 0;
+        boolean complete = false;
+        try (InputStream stream = rendition.getStream()) {
+            if (stream == null) {
+                LOG.warn("No content to inspect for {}", rendition.getPath());
+                failures.increment();
+            } else {
+                byte[] buffer = new byte[bufferSize];
+                while (true) {
+                    int length = stream.read(buffer, 0, (int) Math.min(buffer.length, maxBytes - read + 1));
+                    if (length < 0) {
+                        complete = true;
+                        break;
+                    }
+                    read += length;
+                    // One byte past the budget tells a file of exactly max_bytes from a larger one
+                    if (read > maxBytes) {
+                        exceeded(rendition, "byte", read);
+                        break;
+                    }
+                    feed(active, buffer, length);
+                    if (active.isEmpty()) {
+                        // Nobody needs the rest, so every result is final
+                        complete = true;
+                        break;
+                    }
+                    if (System.nanoTime() - start > maxNanos) {
+                        exceeded(rendition, "time", read);
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to read content of {} after {} bytes", rendition.getPath(), read, e);
+            failures.increment();
+        }
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (ContentExtractor.Inspection inspection : opened) {
+            try {
+                inspection.finish(complete, properties);
+            } catch (RuntimeException e) {
+                LOG.warn("Content extractor failed for {}", rendition.getPath(), e);
+            }
+        }
+        inspected.increment();
+        bytesRead.add(read);
+        return new Result(Collections.unmodifiableMap(properties), read, complete,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void open(List<ContentExtractor> extractors, String mimeType, long size,
+                             List<ContentExtractor.Inspection> opened) {
+        for (ContentExtractor extractor : extractors) {
+            try {
+                if (extractor.accepts(mimeType)) {
+                    opened.add(extractor.open(mimeType, size));
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Content extractor {} could not be opened", extractor.getClass().getName(), e);
+            }
+        }
+    }
+
+    private static void feed(List<ContentExtractor.Inspection> active, byte[] buffer, int length) {
+        active.removeIf(inspection -> {
+            try {
+                return !inspection.update(buffer, 0, length);
+            } catch (RuntimeException e) {
+                LOG.warn("Content extractor failed, ignoring it for the rest of the asset", e);
+                return true;
+            }
+        });
+    }
+
+    private void exceeded(Rendition rendition, String budget, long read) {
+        budgetExceeded.increment();
+        LOG.info("Stopped inspecting {} at the {} budget after {} bytes", rendition.getPath(), budget, read);
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    public long getInspectedCount() {
+        return inspected.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * @return Inspections stopped early by the byte or time budget
+     */
+    public long getBudgetExceededCount() {
+        return budgetExceeded.sum();
+    }
+
+    /**
+     * @return Inspections whose content could not be read
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    // ------------------------------------------------------------------------
+    // Built-in extractors
+    // ------------------------------------------------------------------------
+
+    private static final class Sha256Extractor implements ContentExtractor {
+
+        @Override
+        public boolean accepts(String mimeType) {
+            return true;
+        }
+
+        @Override
+        public Inspection open(String mimeType, long size) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            return new Inspection() {
+                @Override
+                public boolean update(byte[] buffer, int offset, int length) {
+                    digest.update(buffer, offset, length);
+                    return true;
+                }
+
+                @Override
+                public void finish(boolean complete, Map<String, Object> results) {
+                    if (complete) {
+                        results.put("contentSha256", HexFormat.of().formatHex(digest.digest()));
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Reads dimensions from PNG and GIF headers, and walks JPEG segments up to
+     * the frame header, skipping (not buffering) EXIF, XMP and other segments.
+     */
+    private static final class ImageDimensionsExtractor implements ContentExtractor {
+
+        @Override
+        public boolean accepts(String mimeType) {
+            return mimeType != null && mimeType.startsWith("image/");
+        }
+
+        @Override
+        public Inspection open(String mimeType, long size) {
+            return new ImageDimensions();
+        }
+    }
+
+    private static final class ImageDimensions implements ContentExtractor.Inspection {
+
+        private static final int SNIFF = 0;
+        private static final int MARKER = 1;
+        private static final int MARKER_TYPE = 2;
+        private static final int SEGMENT = 3;
+        private static final int SKIP = 4;
+
+        // Enough for the PNG IHDR chunk
+        private final byte[] header = new byte[24];
+        // Segment length, precision, height and width of a JPEG frame header
+        private final byte[] segment = new byte[7];
+        private int headerLength;
+        private int segmentLength;
+        private int state = SNIFF;
+        private int marker;
+        private long skip;
+        private long width;
+        private long height;
+
+        @Override
+        public boolean update(byte[] buffer, int offset, int length) {
+            int end = offset + length;
+            int i = offset;
+            while (i < end) {
+                switch (state) {
+                    case SNIFF:
+                        header[headerLength++] = buffer[i++];
+                        if (headerLength == 2 && u8(header, 0) == 0xFF && u8(header, 1) == 0xD8) {
+                            state = MARKER;
+                        } else if (headerLength == header.length) {
+                            sniff();
+                            return false;
+                        }
+                        break;
+                    case MARKER:
+                        if ((buffer[i++] & 0xFF) != 0xFF) {
+                            return false;
+                        }
+                        state = MARKER_TYPE;
+                        break;
+                    case MARKER_TYPE:
+                        marker = buffer[i++] & 0xFF;
+                        if (marker == 0xD9 || marker == 0xDA) {
+                            // End of image or start of scan without a frame header
+                            return false;
+                        } else if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                            state = MARKER;
+                        } else if (marker != 0xFF) {
+                            segmentLength = 0;
+                            state = SEGMENT;
+                        }
+                        break;
+                    case SEGMENT:
+                        segment[segmentLength++] = buffer[i++];
+                        if (segmentLength == 2 && !isFrameHeader(marker)) {
+                            skip = u16(segment, 0) - 2;
+                            if (skip < 0) {
+                                return false;
+                            }
+                            state = skip > 0 ? SKIP : MARKER;
+                        } else if (segmentLength == segment.length) {
+                            height = u16(segment, 3);
+                            width = u16(segment, 5);
+                            return false;
+                        }
+                        break;
+                    default:
+                        int skipped = (int) Math.min(skip, end - i);
+                        i += skipped;
+                        skip -= skipped;
+                        if (skip == 0) {
+                            state = MARKER;
+                        }
+                        break;
+                }
+            }
+            return true;
+        }
+
+        private void sniff() {
+            if (headerLength >= 24 && u8(header, 0) == 0x89 && header[1] == 'P' && header[2] == 'N'
+                    && header[3] == 'G' && header[12] == 'I' && header[13] == 'H' && header[14] == 'D'
+                    && header[15] == 'R') {
+                width = u32(header, 16);
+                height = u32(header, 20);
+            } else if (headerLength >= 10 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F'
+                    && header[3] == '8') {
+                width = u8(header, 6) | u8(header, 7) << 8;
+                height = u8(header, 8) | u8(header, 9) << 8;
+            }
+        }
+
+        @Override
+        public void finish(boolean complete, Map<String, Object> results) {
+            if (state == SNIFF) {
+                // Content shorter than the header buffer
+                sniff();
+            }
+            if (width > 0 && height > 0) {
+                results.put("contentWidth", width);
+                results.put("contentHeight", height);
+            }
+        }
+
+        private static boolean isFrameHeader(int marker) {
+            // SOF0-SOF15, except DHT, JPG and DAC which share the range
+            return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+        }
+
+        private static int u8(byte[] bytes, int index) {
+            return bytes[index] & 0xFF;
+        }
+
+        private static int u16(byte[] bytes, int index) {
+            return u8(bytes, index) << 8 | u8(bytes, index + 1);
+        }
+
+        private static long u32(byte[] bytes, int index) {
+            return (long) u16(bytes, index) << 16 | u16(bytes, index + 2);
+        }
+    }
+
+    /**
+     * Counts "/Type /Page" objects (not "/Pages") with a byte-level matcher,
+     * so matches spanning chunk boundaries are found without buffering.
+     */
+    private static final class PdfPageCountExtractor implements ContentExtractor {
+
+        private static final byte[] TYPE = "/Type".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] PAGE = "/Page".getBytes(StandardCharsets.US_ASCII);
+
+        @Override
+        public boolean accepts(String mimeType) {
+            return "application/pdf".equals(mimeType);
+        }
+
+        @Override
+        public Inspection open(String mimeType, long size) {
+            return new Inspection() {
+                private int typeMatched;
+                // Bytes of "/Page" matched after a "/Type", -1 when not after one
+                private int pageMatched = -1;
+                private long pages;
+
+                @Override
+                public boolean update(byte[] buffer, int offset, int length) {
+                    for (int i = offset, end = offset + length; i < end; i++) {
+                        byte b = buffer[i];
+                        if (pageMatched == PAGE.length) {
+                            if (!Character.isLetterOrDigit(b)) {
+                                pages++;
+                            }
+                            pageMatched = -1;
+                        }
+                        if (pageMatched >= 0) {
+                            if (pageMatched == 0 && isPdfWhitespace(b)) {
+                                continue;
+                            }
+                            if (b == PAGE[pageMatched]) {
+                                pageMatched++;
+                                continue;
+                            }
+                            pageMatched = -1;
+                        }
+                        // '/' only starts the pattern, so a mismatch restarts without backtracking
+                        if (b == TYPE[typeMatched]) {
+                            if (++typeMatched == TYPE.length) {
+                                typeMatched = 0;
+                                pageMatched = 0;
+                            }
+                        } else {
+                            typeMatched = b == '/' ? 1 : 0;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public void finish(boolean complete, Map<String, Object> results) {
+                    if (pageMatched == PAGE.length) {
+                        pages++;
+                    }
+                    if (complete && pages > 0) {
+                        results.put("contentPageCount", pages);
+                    }
+                }
+            };
+        }
+
+        private static boolean isPdfWhitespace(byte b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+        }
+    }
+
+    /**
+     * Finds the first XMP packet and parses a few properties from it. The
+     * packet is captured into a buffer capped at the configured limit; larger
+     * packets are only reported as present.
+     */
+    private static final class XmpExtractor implements ContentExtractor {
+
+        private static final byte[] START = "<x:xmpmeta".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] END = "</x:xmpmeta>".getBytes(StandardCharsets.US_ASCII);
+
+        private final int maxBytes;
+
+        private XmpExtractor(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public boolean accepts(String mimeType) {
+            return true;
+        }
+
+        @Override
+        public Inspection open(String mimeType, long size) {
+            return new Inspection() {
+                private int startMatched;
+                private int endMatched;
+                private ByteArrayOutputStream packet;
+                private boolean found;
+                private boolean tooLarge;
+
+                @Override
+                public boolean update(byte[] buffer, int offset, int length) {
+                    for (int i = offset, end = offset + length; i < end; i++) {
+                        byte b = buffer[i];
+                        if (!found) {
+                            // '<' only starts the pattern, so a mismatch restarts without backtracking
+                            if (b == START[startMatched]) {
+                                if (++startMatched == START.length) {
+                                    found = true;
+                                    packet = new ByteArrayOutputStream(4096);
+                                    packet.write(START, 0, START.length);
+                                }
+                            } else {
+                                startMatched = b == '<' ? 1 : 0;
+                            }
+                            continue;
+                        }
+                        if (!tooLarge) {
+                            if (packet.size() < maxBytes) {
+                                packet.write(b);
+                            } else {
+                                tooLarge = true;
+                                packet = null;
+                            }
+                        }
+                        if (b == END[endMatched]) {
+                            if (++endMatched == END.length) {
+                                return false;
+                            }
+                        } else {
+                            endMatched = b == '<' ? 1 : 0;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public void finish(boolean complete, Map<String, Object> results) {
+                    if (!found) {
+                        return;
+                    }
+                    results.put("contentXmpPresent", true);
+                    if (packet != null && endMatched == END.length) {
+                        String xmp = packet.toString(StandardCharsets.UTF_8);
+                        putIfFound(results, "contentXmpCreatorTool", xmpValue(xmp, "xmp:CreatorTool"));
+                        putIfFound(results, "contentXmpDocumentId", xmpValue(xmp, "xmpMM:DocumentID"));
+                    }
+                }
+            };
+        }
+
+        private static void putIfFound(Map<String, Object> results, String name, String value) {
+            if (value != null && !value.isEmpty()) {
+                results.put(name, value);
+            }
+        }
+
+        /**
+         * Value of a simple XMP property, written as an attribute or an element.
+         */
+        private static String xmpValue(String xmp, String name) {
+            int attribute = xmp.indexOf(name + "=\"");
+            if (attribute >= 0) {
+                int start = attribute + name.length() + 2;
+                int end = xmp.indexOf('"', start);
+                return end > start ? xmp.substring(start, end).trim() : null;
+            }
+            int element = xmp.indexOf("<" + name + ">");
+            if (element >= 0) {
+                int start = element + name.length() + 2;
+                int end = xmp.indexOf("</" + name + ">", start);
+                return end > start ? xmp.substring(start, end).trim() : null;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.exec.WorkItem;
+import com.adobe.granite.workflow.exec.Workflow;
+import com.adobe.granite.workflow.exec.WorkflowData;
+import com.adobe.granite.workflow.exec.WorkflowProcess;
+import com.adobe.granite.workflow.model.WorkflowNode;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a chain of workflow process steps over many payloads without workflow
+ * instances.
+ *
+ * Bulk reprocessing often only needs the {@link WorkflowProcess} steps of a
+ * model, e.g. the metadata extractor followed by the DAM asset process. Real
+ * instances persist the instance, its history, work items and metadata for
+ * every payload. This runner calls the steps' execute() directly, with
+ * in-memory work items, workflow data and {@link InMemoryMetaDataMap}s that
+ * are dropped after each payload. Only the steps' own content changes are
+ * written.
+ *
+ * Payloads are split into chunks and processed on virtual threads through a
+ * {@link ChunkedWorkQueue}, so a chunk that fails unexpectedly or a worker
+ * that dies is reported instead of stalling the run. Each worker leases a
+ * session per chunk and opens a {@link CommitCoalescer} batch on it, so steps
+ * that commit through the coalescer share a few large commits.
+ * Per-step timings (count, failures, average and maximum) are reported.
+ *
+ * Synthetic items support what process steps read: payload, IDs, metadata,
+ * initiator, node title. Anything else returns null, 0 or false. Steps that
+ * route (participant choosers, OR splits) or that need Handler Advance
+ * semantics are not supported. A step that throws ends the chain for that
+ * payload, as a failed step would.
+ */
+@Component(service = SyntheticProcessRunner.class)
+@Designate(ocd = SyntheticProcessRunner.Config.class)
+public class SyntheticProcessRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SyntheticProcessRunner.class);
+
+    private static final String INITIATOR = "synthetic-workflow";
+
+    @ObjectClassDefinition(
+        name = "Example - Synthetic Process Runner",
+        description = "Runs workflow process steps over payloads without persisting workflow instances"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Parallelism",
+            description = "Worker threads (capped at the session pool size less the reserve)")
+        int parallelism() default 4;
+
+        @AttributeDefinition(name = "Reserved sessions",
+            description = "Pooled sessions left free for workflow starts and other callers during a run")
+        int reserved_sessions() default 2;
+
+        @AttributeDefinition(name = "Chunk size", description = "Payloads processed per leased session")
+        int chunk_size() default 200;
+
+        @AttributeDefinition(name = "Queue capacity", description = "Chunks buffered ahead of the workers")
+        int queue_capacity() default 8;
+
+        @AttributeDefinition(name = "Commit batch size", description = "Payloads per coalesced commit")
+        int commit_batch_size() default 100;
+
+        @AttributeDefinition(name = "Commit batch age (ms)",
+            description = "Commit when the oldest uncommitted payload is this old")
+        long commit_batch_max_millis() default 5000;
+    }
+
+    /**
+     * A process step and its PROCESS_ARGS.
+     */
+    public static final class Step {
+
+        private final String name;
+        private final WorkflowProcess process;
+        private final String processArgs;
+
+        /**
+         * @param name Step title, used for timings and as the work item's node title
+         * @param process The process component
+         * @param processArgs Arguments as configured on a process step, may be null
+         */
+        public Step(String name, WorkflowProcess process, String processArgs) {
+            this.name = name;
+            this.process = process;
+            this.processArgs = processArgs;
+        }
+
+        public Step(WorkflowProcess process) {
+            this(process.getClass().getSimpleName(), process, null);
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Timings of one step over a run.
+     */
+    public static final class StepTiming {
+
+        private final String name;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+        private StepTiming(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos, boolean failed) {
+            executions.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (failed) {
+                failures.increment();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getExecutionCount() {
+            return executions.sum();
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+        }
+
+        public long getAverageMicros() {
+            long count = executions.sum();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / count);
+        }
+
+        public long getMaxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d executions, %d failed, avg %dus, max %dus",
+                name, getExecutionCount(), getFailureCount(), getAverageMicros(), getMaxMicros());
+        }
+    }
+
+    /**
+     * Outcome of a run.
+     */
+    public static final class Report {
+
+        private final List<StepTiming> steps;
+        private final int total;
+        private final Map<String, String> failures = new LinkedHashMap<>();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder commits = new LongAdder();
+        private final long startedAt = System.currentTimeMillis();
+        private long finishedAt;
+
+        private Report(List<Step> steps, int total) {
+            this.total = total;
+            List<StepTiming> timings = new ArrayList<>(steps.size());
+            for (Step step : steps) {
+                timings.add(new StepTiming(step.getName()));
+            }
+            this.steps = Collections.unmodifiableList(timings);
+        }
+
+        private synchronized void failed(String payload, String reason) {
+            failures.putIfAbsent(payload, reason);
+        }
+
+        private void failed(List<String> payloads, String reason) {
+            for (String payload : payloads) {
+                failed(payload, reason);
+            }
+        }
+
+        private synchronized void finish() {
+            finishedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @return Payloads that went through every step and were committed
+         */
+        public long getSuccessCount() {
+            return total - getFailureCount();
+        }
+
+        public synchronized int getFailureCount() {
+            return failures.size();
+        }
+
+        /**
+         * @return Payload to the failed step and its error, the commit failure,
+         *         or why it was not processed
+         */
+        public synchronized Map<String, String> getFailures() {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+        }
+
+        /**
+         * @return Timings per step, in chain order
+         */
+        public List<StepTiming> getStepTimings() {
+            return steps;
+        }
+
+        /**
+         * @return Repository commits made through the coalescer
+         */
+        public long getCommitCount() {
+            return commits.sum();
+        }
+
+        public synchronized long getDurationMillis() {
+            return (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("processed=%d, failed=%d, commits=%d, duration=%dms, steps=%s",
+                processed.sum(), getFailureCount(), getCommitCount(), getDurationMillis(), steps);
+        }
+    }
+
+    @Reference
+    private WorkflowSessionPool sessionPool;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private int parallelism;
+    private int reservedSessions;
+    private int chunkSize;
+    private int queueCapacity;
+    private int commitBatchSize;
+    private long commitBatchMaxMillis;
+
+    @Activate
+    protected void activate(Config config) {
+        parallelism = Math.max(1, config.parallelism());
+        reservedSessions = Math.max(0, config.reserved_sessions());
+        chunkSize = Math.max(1, config.chunk_size());
+        queueCapacity = Math.max(1, config.queue_capacity());
+        commitBatchSize = Math.max(1, config.commit_batch_size());
+        commitBatchMaxMillis = Math.max(0, config.commit_batch_max_millis());
+    }
+
+    /**
+     * Run the steps over every payload with the configured parallelism.
+     *
+     * @param payloads Payload paths
+     * @param steps The process chain, in execution order
+     * @return Failures and per-step timings
+     */
+    public Report run(List<String> payloads, List<Step> steps) {
+        return run(payloads, steps, parallelism);
+    }
+
+    /**
+     * Run the steps over every payload on up to {@code parallelism} virtual
+     * threads. The calling thread blocks while the chunk queue is full.
+     *
+     * @param payloads Payload paths
+     * @param steps The process chain, in execution order
+     * @param parallelism Number of worker threads
+     * @return Failures and per-step timings
+     */
+    public Report run(List<String> payloads, List<Step> steps, int parallelism) {
+        Report report = new Report(steps, payloads.size());
+        // Leave part of the pool free so workflow starts are not starved for the length of the run
+        int workers = ChunkedWorkQueue.workerCount(parallelism, sessionPool.getMaxSize(), reservedSessions);
+        LOG.info("Synthetic run of {} step(s) over {} payloads on {} workers", steps.size(), payloads.size(), workers);
+
+        ChunkedWorkQueue.run(payloads, chunkSize, workers, queueCapacity, "synthetic-workflow-",
+            () -> newWorker(steps, report), report::failed);
+
+        report.finish();
+        LOG.info("Synthetic run finished: {}", report);
+        return report;
+    }
+
+    private ChunkedWorkQueue.ChunkHandler newWorker(List<Step> steps, Report report) {
+        // Step arguments per worker: steps may write to the map they are given
+        List<InMemoryMetaDataMap> stepArgs = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            InMemoryMetaDataMap args = new InMemoryMetaDataMap();
+            if (step.processArgs != null) {
+                args.put(ProcessArgs.PROCESS_ARGS, step.processArgs);
+            }
+            stepArgs.add(args);
+        }
+        return chunk -> {
+            try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+                runChunk(lease.getWorkflowSession(), chunk, steps, stepArgs, report);
+                // Drop cached state before the session goes back to the pool
+                lease.getResourceResolver().refresh();
+            } catch (LoginException e) {
+                LOG.error("No workflow session available for chunk of {} payloads", chunk.size(), e);
+                report.failed(chunk, "No workflow session: " + e.getMessage());
+            }
+        };
+    }
+
+    private void runChunk(WorkflowSession workflowSession, List<String> chunk, List<Step> steps,
+                          List<InMemoryMetaDataMap> stepArgs, Report report) {
+        // The resolver the steps get from the session, so their commits join the batch
+        ResourceResolver resolver = workflowSession.adaptTo(ResourceResolver.class);
+        CommitCoalescer.Batch batch = CommitCoalescer.open(resolver, commitBatchSize, commitBatchMaxMillis);
+        try {
+            for (String payload : chunk) {
+                runPayload(workflowSession, payload, steps, stepArgs, report);
+                report.processed.increment();
+            }
+        } finally {
+            batch.close();
+            report.commits.add(batch.getCommitCount());
+            for (String payload : batch.getFailures()) {
+                report.failed(payload, "Commit failed");
+            }
+        }
+    }
+
+    private void runPayload(WorkflowSession workflowSession, String payload, List<Step> steps,
+                            List<InMemoryMetaDataMap> stepArgs, Report report) {
+        String workflowId = "synthetic/" + sequence.incrementAndGet();
+        InMemoryMetaDataMap metadata = new InMemoryMetaDataMap();
+        Date started = new Date();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("getPayload", payload);
+        data.put("getPayloadType", "JCR_PATH");
+        data.put("getMetaDataMap", metadata);
+        WorkflowData workflowData = synthetic(WorkflowData.class, data);
+
+        Map<String, Object> instance = new HashMap<>();
+        instance.put("getId", workflowId);
+        instance.put("getState", "RUNNING");
+        instance.put("isActive", true);
+        instance.put("getInitiator", INITIATOR);
+        instance.put("getTimeStarted", started);
+        instance.put("getWorkflowData", workflowData);
+        instance.put("getMetaDataMap", metadata);
+        Workflow workflow = synthetic(Workflow.class, instance);
+
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            Map<String, Object> item = new HashMap<>();
+            item.put("getId", workflowId + "/" + i);
+            item.put("getWorkflow", workflow);
+            item.put("getWorkflowData", workflowData);
+            item.put("getMetaDataMap", new InMemoryMetaDataMap());
+            item.put("getNode", synthetic(WorkflowNode.class, Collections.singletonMap("getTitle", step.getName())));
+            item.put("getTimeStarted", new Date());
+            item.put("getCurrentAssignee", INITIATOR);
+            WorkItem workItem = synthetic(WorkItem.class, item);
+
+            long start = System.nanoTime();
+            try {
+                step.process.execute(workItem, workflowSession, stepArgs.get(i));
+                report.steps.get(i).record(System.nanoTime() - start, false);
+            } catch (WorkflowException | RuntimeException e) {
+                report.steps.get(i).record(System.nanoTime() - start, true);
+                LOG.warn("Step {} failed for {}", step.getName(), payload, e);
+                report.failed(payload, step.getName() + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * In-memory implementation of a Granite interface: the given methods
+     * return the mapped values, all others null, 0 or false.
+     */
+    private static <T> T synthetic(Class<T> type, Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> {
+                String name = method.getName();
+                if (values.containsKey(name)) {
+                    return values.get(name);
+                }
+                switch (name) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return type.getSimpleName() + "[" + values.getOrDefault("getId", "") + "]";
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            }));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        // The proxy does not convert between boxed types, so box each exactly
+        return type == short.class ? Short.valueOf((short) 0) : Byte.valueOf((byte) 0);
+    }
+}
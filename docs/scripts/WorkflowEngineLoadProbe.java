@@ -0,0 +1,117 @@
+package com.example.core.workflows;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Samples how many workflow instances are currently RUNNING.
+ *
+ * Callers that generate workflows at high volume use this to apply
+ * backpressure before the workflow engine's queue runs away. Counting is a
+ * repository query, so the value is sampled at most once per interval and
+ * capped at a configurable limit - callers only need to know whether the
+ * engine is above their threshold, not the exact number. Only one caller
+ * runs the query; the others keep using the previous sample rather than
+ * waiting for it.
+ */
+@Component(service = WorkflowEngineLoadProbe.class)
+@Designate(ocd = WorkflowEngineLoadProbe.Config.class)
+public class WorkflowEngineLoadProbe {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowEngineLoadProbe.class);
+
+    private static final String RUNNING_QUERY =
+        "SELECT [jcr:path] FROM [cq:Workflow] AS w "
+        + "WHERE ISDESCENDANTNODE(w, '/var/workflow/instances') AND w.[status] = 'RUNNING'";
+
+    @ObjectClassDefinition(
+        name = "Example - Workflow Engine Load Probe",
+        description = "Samples the number of running workflow instances"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Sample interval (ms)", description = "Minimum time between two counts")
+        long sample_interval_millis() default 2000;
+
+        @AttributeDefinition(name = "Count limit", description = "Counting stops at this many running instances")
+        int count_limit() default 10000;
+    }
+
+    @Reference
+    private WorkflowSessionPool sessionPool;
+
+    private long sampleIntervalMillis;
+    private int countLimit;
+
+    // Not a monitor: the query blocks, and callers are often virtual threads
+    private final ReentrantLock sampling = new ReentrantLock();
+
+    private volatile int runningCount;
+    private volatile long sampledAt;
+
+    @Activate
+    protected void activate(Config config) {
+        sampleIntervalMillis = Math.max(0, config.sample_interval_millis());
+        countLimit = Math.max(1, config.count_limit());
+        sampledAt = 0;
+    }
+
+    /**
+     * @return Number of RUNNING workflow instances (capped at the count limit),
+     *         at most one sample interval old
+     */
+    public int getRunningWorkflowCount() {
+        if (System.currentTimeMillis() - sampledAt >= sampleIntervalMillis) {
+            sample();
+        }
+        return runningCount;
+    }
+
+    public int getCountLimit() {
+        return countLimit;
+    }
+
+    private void sample() {
+        if (!sampling.tryLock()) {
+            return; // another thread is sampling; keep the previous value meanwhile
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (now - sampledAt >= sampleIntervalMillis) {
+                runningCount = countRunning(runningCount);
+                sampledAt = now;
+            }
+        } finally {
+            sampling.unlock();
+        }
+    }
+
+    private int countRunning(int previous) {
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            ResourceResolver resolver = lease.getResourceResolver();
+            Iterator<Resource> running = resolver.findResources(RUNNING_QUERY, "JCR-SQL2");
+            int count = 0;
+            while (count < countLimit && running.hasNext()) {
+                running.next();
+                count++;
+            }
+            LOG.debug("Running workflow instances: {}{}", count, count >= countLimit ? "+" : "");
+            return count;
+        } catch (Exception e) {
+            // Keep the previous sample; a failed probe must not stop callers
+            LOG.warn("Failed to sample running workflow count", e);
+            return previous;
+        }
+    }
+}
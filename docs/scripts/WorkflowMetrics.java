@@ -0,0 +1,464 @@
+package com.example.core.workflows;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms, success/failure counters and in-flight gauges for
+ * workflow steps, shared by all process steps, choosers and the starter.
+ *
+ * A step opens an {@link Execution} when it starts, marks the end of each of
+ * its phases and ends the execution in a finally block:
+ * <pre>
+ * WorkflowMetrics.Execution execution = metrics.start("myProcess");
+ * try {
+ *     ... get resolver and resource ...   execution.phase(Phase.RESOLVE);
+ *     ... adaptTo(Asset.class) ...         execution.phase(Phase.ADAPT);
+ *     ... work ...                         execution.phase(Phase.PROCESS);
+ *     ... commit ...                       execution.phase(Phase.COMMIT);
+ * } catch (Exception e) {
+ *     execution.fail();
+ *     throw ...;
+ * } finally {
+ *     execution.end();
+ * }
+ * </pre>
+ * A phase marked more than once in an execution is recorded as one sample
+ * with the summed time. Recording is lock-free: a map lookup per execution,
+ * then only System.nanoTime() and counter increments.
+ *
+ * Histograms use four sub-buckets per power of two (at most ~25% error in
+ * the reported percentiles) up to about an hour. The values are read over
+ * JMX ({@link WorkflowMetricsMBean}, in /system/console/jmx) or through
+ * {@link #getSnapshot(String)}. Counters only grow until {@link #reset()}, so
+ * monitoring systems can derive rates from them.
+ */
+@Component(
+    service = {WorkflowMetrics.class, WorkflowMetricsMBean.class},
+    property = {
+        "jmx.objectname=" + WorkflowMetrics.OBJECT_NAME
+    }
+)
+@Designate(ocd = WorkflowMetrics.Config.class)
+public class WorkflowMetrics implements WorkflowMetricsMBean {
+
+    public static final String OBJECT_NAME = "com.example.workflow:type=WorkflowMetrics";
+
+    @ObjectClassDefinition(
+        name = "Example - Workflow Metrics",
+        description = "Per-step latency histograms and counters for workflow components, exposed over JMX"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Enabled", description = "When disabled nothing is recorded")
+        boolean enabled() default true;
+    }
+
+    /**
+     * Phases of a step execution.
+     */
+    public enum Phase {
+        /** Obtaining the resolver and reading the payload resource */
+        RESOLVE,
+        /** Adapting the payload (e.g. to an Asset) */
+        ADAPT,
+        /** The step's own work */
+        PROCESS,
+        /** Persisting the results; only the enqueue when a bulk runner defers commits */
+        COMMIT
+    }
+
+    /**
+     * One execution of a step. Not thread-safe; use it on the step's thread.
+     */
+    public static final class Execution {
+
+        private static final Execution NONE = new Execution(null);
+
+        private final StepStats stats;
+        private final long startNanos;
+        private long markNanos;
+        private long[] phaseNanos;
+        private boolean failed;
+
+        private Execution(StepStats stats) {
+            this.stats = stats;
+            this.startNanos = stats != null ? System.nanoTime() : 0;
+            this.markNanos = startNanos;
+        }
+
+        /**
+         * Attribute the time since the previous mark (or the start) to a phase.
+         */
+        public void phase(Phase phase) {
+            if (stats == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (phaseNanos == null) {
+                phaseNanos = new long[PHASES.length];
+                Arrays.fill(phaseNanos, -1);
+            }
+            int ordinal = phase.ordinal();
+            phaseNanos[ordinal] = Math.max(phaseNanos[ordinal], 0) + (now - markNanos);
+            markNanos = now;
+        }
+
+        /**
+         * Count this execution as failed when it ends.
+         */
+        public void fail() {
+            failed = true;
+        }
+
+        /**
+         * Record the execution. Call once, in a finally block.
+         */
+        public void end() {
+            if (stats == null) {
+                return;
+            }
+            stats.total.record(System.nanoTime() - startNanos);
+            if (phaseNanos != null) {
+                for (int i = 0; i < phaseNanos.length; i++) {
+                    if (phaseNanos[i] >= 0) {
+                        stats.phases[i].record(phaseNanos[i]);
+                    }
+                }
+            }
+            (failed ? stats.failed : stats.succeeded).increment();
+            stats.inFlight.decrement();
+        }
+    }
+
+    /**
+     * Point-in-time view of one step.
+     */
+    public static final class Snapshot {
+
+        private final long succeeded;
+        private final long failed;
+        private final long inFlight;
+        private final HistogramSnapshot total;
+        private final Map<Phase, HistogramSnapshot> phases;
+
+        private Snapshot(StepStats stats) {
+            this.succeeded = stats.succeeded.sum();
+            this.failed = stats.failed.sum();
+            this.inFlight = stats.inFlight.sum();
+            this.total = stats.total.snapshot();
+            this.phases = new EnumMap<>(Phase.class);
+            for (Phase phase : PHASES) {
+                phases.put(phase, stats.phases[phase.ordinal()].snapshot());
+            }
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return Latency of whole executions
+         */
+        public HistogramSnapshot getTotal() {
+            return total;
+        }
+
+        public HistogramSnapshot getPhase(Phase phase) {
+            return phases.get(phase);
+        }
+    }
+
+    /**
+     * Point-in-time view of a latency histogram. Values are in microseconds.
+     */
+    public static final class HistogramSnapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        private HistogramSnapshot(long[] counts, long sumNanos, long maxNanos) {
+            long n = 0;
+            for (long c : counts) {
+                n += c;
+            }
+            this.counts = counts;
+            this.count = n;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanMicros() {
+            return count > 0 ? TimeUnit.NANOSECONDS.toMicros(sumNanos / count) : 0;
+        }
+
+        public long getMaxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos);
+        }
+
+        /**
+         * @param quantile Between 0 and 1, e.g. 0.99
+         * @return Upper bound of the bucket holding the quantile, at most the maximum
+         */
+        public long getPercentileMicros(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return TimeUnit.NANOSECONDS.toMicros(Math.min(Histogram.upperBound(i), maxNanos));
+                }
+            }
+            return getMaxMicros();
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final class StepStats {
+
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final Histogram total = new Histogram();
+        private final Histogram[] phases = new Histogram[PHASES.length];
+
+        private StepStats() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new Histogram();
+            }
+        }
+
+        private void reset() {
+            succeeded.reset();
+            failed.reset();
+            total.reset();
+            for (Histogram phase : phases) {
+                phase.reset();
+            }
+        }
+    }
+
+    /**
+     * Log-linear histogram of nanosecond values: exact below 4 ns, then four
+     * buckets per power of two.
+     */
+    private static final class Histogram {
+
+        private static final int MAX_EXPONENT = 41;
+        private static final int BUCKETS = 4 * (MAX_EXPONENT - 1) + 4;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(value));
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        private static int bucket(long value) {
+            if (value < 4) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent > MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            return 4 * (exponent - 1) + (int) ((value >>> (exponent - 2)) & 3);
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < 4) {
+                return bucket;
+            }
+            int exponent = bucket / 4 + 1;
+            long width = 1L << (exponent - 2);
+            return (1L << exponent) + (bucket % 4 + 1) * width - 1;
+        }
+
+        private HistogramSnapshot snapshot() {
+            long[] values = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                values[i] = counts.get(i);
+            }
+            return new HistogramSnapshot(values, sum.sum(), max.get());
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            sum.reset();
+            max.reset();
+        }
+    }
+
+    private static final String[] LATENCY_ITEMS = {"meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros"};
+    private static final String[] STEP_ITEMS = items("step", "succeeded", "failed", "inFlight", "throughputPerSecond");
+    private static final String[] PHASE_ITEMS = items("step", "phase", "count");
+
+    private static final TabularType STEPS_TYPE;
+    private static final TabularType PHASES_TYPE;
+
+    static {
+        try {
+            STEPS_TYPE = tabularType("WorkflowStep", STEP_ITEMS, new String[] {"step"},
+                SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.DOUBLE);
+            PHASES_TYPE = tabularType("WorkflowStepPhase", PHASE_ITEMS, new String[] {"step", "phase"},
+                SimpleType.STRING, SimpleType.STRING, SimpleType.LONG);
+        } catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final Map<String, StepStats> steps = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled = true;
+    private volatile long resetNanos = System.nanoTime();
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        enabled = config.enabled();
+    }
+
+    /**
+     * Start timing an execution of a step.
+     *
+     * @param step Step name, a constant of the calling component
+     * @return The execution; end it in a finally block
+     */
+    public Execution start(String step) {
+        if (!enabled) {
+            return Execution.NONE;
+        }
+        StepStats stats = steps.get(step);
+        if (stats == null) {
+            stats = steps.computeIfAbsent(step, name -> new StepStats());
+        }
+        stats.inFlight.increment();
+        return new Execution(stats);
+    }
+
+    /**
+     * @return Current values of a step, or null if it never ran
+     */
+    public Snapshot getSnapshot(String step) {
+        StepStats stats = steps.get(step);
+        return stats != null ? new Snapshot(stats) : null;
+    }
+
+    // ------------------------------------------------------------------------
+    // JMX
+    // ------------------------------------------------------------------------
+
+    @Override
+    public TabularData getSteps() {
+        double seconds = Math.max(1e-3, (System.nanoTime() - resetNanos) / 1e9);
+        TabularDataSupport table = new TabularDataSupport(STEPS_TYPE);
+        for (Map.Entry<String, StepStats> entry : new TreeMap<>(steps).entrySet()) {
+            Snapshot snapshot = new Snapshot(entry.getValue());
+            long completed = snapshot.getSucceeded() + snapshot.getFailed();
+            table.put(row(STEPS_TYPE, STEP_ITEMS, latencyRow(snapshot.getTotal(), entry.getKey(),
+                snapshot.getSucceeded(), snapshot.getFailed(), snapshot.getInFlight(), completed / seconds)));
+        }
+        return table;
+    }
+
+    @Override
+    public TabularData getPhases() {
+        TabularDataSupport table = new TabularDataSupport(PHASES_TYPE);
+        for (Map.Entry<String, StepStats> entry : new TreeMap<>(steps).entrySet()) {
+            for (Phase phase : PHASES) {
+                HistogramSnapshot histogram = entry.getValue().phases[phase.ordinal()].snapshot();
+                if (histogram.getCount() > 0) {
+                    table.put(row(PHASES_TYPE, PHASE_ITEMS,
+                        latencyRow(histogram, entry.getKey(), phase.name(), histogram.getCount())));
+                }
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public void reset() {
+        for (StepStats stats : steps.values()) {
+            stats.reset();
+        }
+        resetNanos = System.nanoTime();
+    }
+
+    private static String[] items(String... leading) {
+        String[] names = Arrays.copyOf(leading, leading.length + LATENCY_ITEMS.length);
+        System.arraycopy(LATENCY_ITEMS, 0, names, leading.length, LATENCY_ITEMS.length);
+        return names;
+    }
+
+    private static TabularType tabularType(String name, String[] items, String[] index, OpenType<?>... leading)
+            throws OpenDataException {
+        OpenType<?>[] types = Arrays.copyOf(leading, items.length);
+        Arrays.fill(types, leading.length, types.length, SimpleType.LONG);
+        CompositeType rowType = new CompositeType(name, name, items, items, types);
+        return new TabularType(name + "s", name + "s", rowType, index);
+    }
+
+    private static Object[] latencyRow(HistogramSnapshot histogram, Object... leading) {
+        Object[] values = Arrays.copyOf(leading, leading.length + LATENCY_ITEMS.length);
+        values[leading.length] = histogram.getMeanMicros();
+        values[leading.length + 1] = histogram.getPercentileMicros(0.5);
+        values[leading.length + 2] = histogram.getPercentileMicros(0.9);
+        values[leading.length + 3] = histogram.getPercentileMicros(0.99);
+        values[leading.length + 4] = histogram.getMaxMicros();
+        return values;
+    }
+
+    private static CompositeDataSupport row(TabularType type, String[] items, Object[] values) {
+        try {
+            return new CompositeDataSupport(type.getRowType(), items, values);
+        } catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
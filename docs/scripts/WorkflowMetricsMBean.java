@@ -0,0 +1,27 @@
+package com.example.core.workflows;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * JMX view of {@link WorkflowMetrics}, registered as
+ * {@code com.example.workflow:type=WorkflowMetrics}.
+ * Latencies are in microseconds.
+ */
+public interface WorkflowMetricsMBean {
+
+    /**
+     * @return Per step: succeeded, failed, in flight, throughput since reset and
+     *         latency percentiles of whole executions
+     */
+    TabularData getSteps();
+
+    /**
+     * @return Per step and phase (RESOLVE, ADAPT, PROCESS, COMMIT): count and latency percentiles
+     */
+    TabularData getPhases();
+
+    /**
+     * Clear counters and histograms. In-flight gauges are kept.
+     */
+    void reset();
+}
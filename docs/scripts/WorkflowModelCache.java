@@ -0,0 +1,116 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.model.WorkflowModel;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of workflow models keyed by model path.
+ *
+ * A handful of models (request for activation, post-processing models) account
+ * for nearly all programmatic starts, so reading the model from the repository
+ * on every start is wasted work. Entries are dropped when anything under
+ * /var/workflow/models changes, including changes made on other cluster nodes.
+ */
+@Component(
+    service = {WorkflowModelCache.class, ResourceChangeListener.class},
+    property = {
+        ResourceChangeListener.PATHS + "=/var/workflow/models"
+    }
+)
+public class WorkflowModelCache implements ResourceChangeListener, ExternalResourceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowModelCache.class);
+
+    private final ConcurrentMap<String, WorkflowModel> models = new ConcurrentHashMap<>();
+
+    // Bumped on every invalidation so a load racing with a model change is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Get a workflow model, reading it through the given session on a cache miss.
+     *
+     * @param workflowSession Session used to load the model on a miss
+     * @param modelPath The workflow model path
+     * @return The model, or null if it does not exist
+     * @throws WorkflowException if the model cannot be read
+     */
+    public WorkflowModel getModel(WorkflowSession workflowSession, String modelPath) throws WorkflowException {
+        WorkflowModel model = models.get(modelPath);
+        if (model != null) {
+            hits.increment();
+            return model;
+        }
+
+        misses.increment();
+        long loadGeneration = generation.get();
+        model = workflowSession.getModel(modelPath);
+        if (model != null && generation.get() == loadGeneration) {
+            models.put(modelPath, model);
+        }
+        return model;
+    }
+
+    @Override
+    public void onChange(List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            String changedPath = change.getPath();
+            generation.incrementAndGet();
+            // Drop the model that contains the change, or all models below a removed folder
+            models.keySet().removeIf(modelPath -> {
+                boolean affected = PayloadPaths.isSameOrDescendant(changedPath, modelPath)
+                    || PayloadPaths.isSameOrDescendant(modelPath, changedPath);
+                if (affected) {
+                    invalidations.increment();
+                    LOG.debug("Invalidated cached workflow model {} ({} {})",
+                        modelPath, change.getType(), changedPath);
+                }
+                return affected;
+            });
+        }
+    }
+
+    /**
+     * Drop every cached model.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        models.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    public int getSize() {
+        return models.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+}
@@ -0,0 +1,422 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.exec.WorkItem;
+import com.adobe.granite.workflow.exec.Workflow;
+import com.adobe.granite.workflow.exec.WorkflowData;
+import com.adobe.granite.workflow.model.WorkflowNode;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import com.example.aem.workflows.CustomMetadataExtractorWorkflow;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.wrappers.ResourceResolverWrapper;
+import org.apache.sling.api.wrappers.ResourceWrapper;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * JMH benchmarks for the execute() paths of the workflow process templates.
+ *
+ * Processes run against an in-memory stand-in: resources live in the Sling
+ * resourceresolver-mock repository, asset adaptation and the Workflow/WorkItem
+ * objects are stub-only Mockito mocks (no invocation recording), and workflow
+ * metadata is an {@link InMemoryMetaDataMap}. The stand-in cost is constant, so
+ * differences between runs point at the process code.
+ *
+ * Run from the core module's test classpath (see "Benchmarking Workflow
+ * Processes" in SKILL.md); main() enables the GC profiler, whose
+ * gc.alloc.rate.norm column is the allocation per execute in bytes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WorkflowProcessBenchmark {
+
+    private static final String ASSET_PATH = "/content/dam/benchmark/image.jpg";
+    private static final String PAGE_PATH = "/content/mysite/marketing/campaigns/page";
+    private static final int RENDITION_COUNT = 6;
+    // Streamed content of the original; kept small so the checksum does not dominate the extractor
+    private static final byte[] ORIGINAL_CONTENT = newJpegContent(256 * 1024);
+
+    private final BasicWorkflowProcessTemplate basicProcess = new BasicWorkflowProcessTemplate();
+    private final DamAssetWorkflowProcessTemplate damAssetProcess = new DamAssetWorkflowProcessTemplate();
+    private final CustomMetadataExtractorWorkflow metadataExtractor = new CustomMetadataExtractorWorkflow();
+    private final HierarchicalApprovalChooser approvalChooser = new HierarchicalApprovalChooser();
+    private final ApprovalDecisionRecorder decisionRecorder = new ApprovalDecisionRecorder();
+    private final EscalationCheckProcess escalationCheck = new EscalationCheckProcess();
+    private final ApprovalCompletionNotifier completionNotifier = new ApprovalCompletionNotifier();
+    private final ApprovalRoutingTable approvalRoutingTable = new ApprovalRoutingTable();
+    private final ApproverGroupResolver approverGroupResolver = new ApproverGroupResolver();
+    private RenditionProcessingStage renditionStage;
+
+    private ResourceResolver resolver;
+    private WorkflowSession workflowSession;
+
+    private WorkItem assetWorkItem;
+    private WorkItem pageWorkItem;
+    private InMemoryMetaDataMap assetWorkflowMetadata;
+    private InMemoryMetaDataMap pageWorkflowMetadata;
+    private InMemoryMetaDataMap noArgs;
+    private InMemoryMetaDataMap forceArgs;
+    private InMemoryMetaDataMap decisionArgs;
+    private InMemoryMetaDataMap escalationArgs;
+    private Map<String, Object> approvalBaseline;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ResourceResolver repository = new MockResourceResolverFactory().getResourceResolver(null);
+        Map<String, Object> metadataProps = new HashMap<>();
+        metadataProps.put("dc:title", "Benchmark image");
+        ResourceUtil.getOrCreateResource(repository, ASSET_PATH + "/jcr:content/metadata", metadataProps, null, false);
+        ResourceUtil.getOrCreateResource(repository, PAGE_PATH + "/jcr:content",
+            Collections.singletonMap("jcr:title", (Object) "Campaign"), null, false);
+        repository.commit();
+
+        approvalRoutingTable.activate(configDefaults(ApprovalRoutingTable.Config.class));
+        inject(approverGroupResolver, "routingTable", approvalRoutingTable);
+        approverGroupResolver.activate(configDefaults(ApproverGroupResolver.Config.class));
+        inject(approvalChooser, "approverGroupResolver", approverGroupResolver);
+        inject(escalationCheck, "routingTable", approvalRoutingTable);
+        // No-op scheduler: deadline persistence is repository I/O, not process cost
+        EscalationScheduler escalationScheduler = stub(EscalationScheduler.class);
+        inject(approvalChooser, "escalationScheduler", escalationScheduler);
+        inject(decisionRecorder, "escalationScheduler", escalationScheduler);
+        inject(escalationCheck, "escalationScheduler", escalationScheduler);
+        StreamingContentInspector contentInspector = new StreamingContentInspector();
+        contentInspector.activate(configDefaults(StreamingContentInspector.Config.class));
+        inject(metadataExtractor, "contentInspector", contentInspector);
+        ContentFingerprintIndex fingerprintIndex = new ContentFingerprintIndex();
+        fingerprintIndex.activate(configDefaults(ContentFingerprintIndex.Config.class));
+        inject(damAssetProcess, "fingerprintIndex", fingerprintIndex);
+        inject(metadataExtractor, "fingerprintIndex", fingerprintIndex);
+        renditionStage = new RenditionProcessingStage();
+        renditionStage.activate(configDefaults(RenditionProcessingStage.Config.class));
+        inject(damAssetProcess, "renditionStage", renditionStage);
+        // Recording is part of every step's cost, so benchmark with it enabled
+        WorkflowMetrics metrics = new WorkflowMetrics();
+        metrics.activate(configDefaults(WorkflowMetrics.Config.class));
+        for (Object component : new Object[] {basicProcess, damAssetProcess, metadataExtractor, approvalChooser,
+                decisionRecorder, escalationCheck, completionNotifier}) {
+            inject(component, "metrics", metrics);
+        }
+
+        resolver = new AssetAwareResolver(repository, ASSET_PATH, newAsset());
+        workflowSession = stub(WorkflowSession.class);
+        when(workflowSession.adaptTo(ResourceResolver.class)).thenReturn(resolver);
+
+        assetWorkflowMetadata = new InMemoryMetaDataMap();
+        assetWorkItem = newWorkItem(ASSET_PATH, assetWorkflowMetadata);
+
+        pageWorkflowMetadata = new InMemoryMetaDataMap();
+        pageWorkflowMetadata.put("approvalLevel", 1);
+        pageWorkflowMetadata.put("currentStepLevel", 1);
+        pageWorkflowMetadata.put("lastDecision", "approve");
+        ApprovalHistory.append(pageWorkflowMetadata, new ApprovalHistory.Entry(
+            System.currentTimeMillis(), "Initial Review", "APPROVE", "reviewer", ""));
+        approvalBaseline = new HashMap<>(pageWorkflowMetadata);
+        pageWorkItem = newWorkItem(PAGE_PATH, pageWorkflowMetadata);
+
+        noArgs = new InMemoryMetaDataMap();
+        forceArgs = new InMemoryMetaDataMap();
+        forceArgs.put("PROCESS_ARGS", "FORCE_REPROCESS:true");
+        decisionArgs = new InMemoryMetaDataMap();
+        decisionArgs.put("PROCESS_ARGS", "DECISION:approve,COMMENTS:Looks good");
+        escalationArgs = new InMemoryMetaDataMap();
+        escalationArgs.put("PROCESS_ARGS", "THRESHOLD_HOURS:24");
+
+        // Record the fingerprints, so the *Unchanged benchmarks take the skip path
+        damAssetProcess.execute(assetWorkItem, workflowSession, noArgs);
+        metadataExtractor.execute(assetWorkItem, workflowSession, noArgs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renditionStage.deactivate();
+        resolver.close();
+    }
+
+    // ------------------------------------------------------------------------
+    // Asset processes
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    public void basicProcess() throws WorkflowException {
+        basicProcess.execute(assetWorkItem, workflowSession, noArgs);
+    }
+
+    // The asset never changes here, so the full-processing benchmarks force reprocessing
+
+    @Benchmark
+    public void damAssetProcess() throws WorkflowException {
+        damAssetProcess.execute(assetWorkItem, workflowSession, forceArgs);
+    }
+
+    @Benchmark
+    public void damAssetProcessUnchanged() throws WorkflowException {
+        damAssetProcess.execute(assetWorkItem, workflowSession, noArgs);
+    }
+
+    @Benchmark
+    public void customMetadataExtractor() throws WorkflowException {
+        metadataExtractor.execute(assetWorkItem, workflowSession, forceArgs);
+    }
+
+    @Benchmark
+    public void customMetadataExtractorUnchanged() throws WorkflowException {
+        metadataExtractor.execute(assetWorkItem, workflowSession, noArgs);
+    }
+
+    // ------------------------------------------------------------------------
+    // Approval components
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    public void approvalChooser(Blackhole blackhole) throws WorkflowException {
+        resetApprovalState();
+        blackhole.consume(approvalChooser.getParticipant(pageWorkItem, workflowSession, noArgs));
+    }
+
+    @Benchmark
+    public void approvalDecisionRecorder() throws WorkflowException {
+        resetApprovalState();
+        decisionRecorder.execute(pageWorkItem, workflowSession, decisionArgs);
+    }
+
+    @Benchmark
+    public void escalationCheck() throws WorkflowException {
+        resetApprovalState();
+        // Overdue step, so every call takes the escalation path
+        pageWorkflowMetadata.put("currentStepStartTime",
+            new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(100)));
+        escalationCheck.execute(pageWorkItem, workflowSession, escalationArgs);
+    }
+
+    @Benchmark
+    public void approvalCompletionNotifier() throws WorkflowException {
+        resetApprovalState();
+        completionNotifier.execute(pageWorkItem, workflowSession, noArgs);
+    }
+
+    // ------------------------------------------------------------------------
+    // Payload path parsing (per participant step)
+    // ------------------------------------------------------------------------
+
+    /**
+     * Baseline: the split/replaceAll parsing the chooser used before
+     * PayloadPaths, including the second sanitize in getApproverGroup.
+     */
+    @Benchmark
+    public String departmentSplitRegex() {
+        String[] segments = PAGE_PATH.split("/");
+        String department = segments.length > 3 ? segments[3].replaceAll("[^a-zA-Z0-9-_]", "") : "default";
+        return department.replaceAll("[^a-zA-Z0-9-_]", "");
+    }
+
+    @Benchmark
+    public String departmentPayloadPaths() {
+        return PayloadPaths.sanitizeGroupName(PayloadPaths.segment(PAGE_PATH, 2));
+    }
+
+    @Benchmark
+    public String routingTableLookup() {
+        return approvalRoutingTable.getApproverGroup(PAGE_PATH, null, 1);
+    }
+
+    // ------------------------------------------------------------------------
+    // Process argument parsing (per step execution)
+    // ------------------------------------------------------------------------
+
+    /**
+     * Baseline: per-call splitting as the approval steps did before ProcessArgs.
+     */
+    @Benchmark
+    public void processArgsSplit(Blackhole blackhole) {
+        for (String part : decisionArgs.get("PROCESS_ARGS", "").split(",")) {
+            if (part.startsWith("COMMENTS:")) {
+                blackhole.consume(part.substring("COMMENTS:".length()).trim());
+            }
+        }
+    }
+
+    @Benchmark
+    public String processArgsCached() {
+        return ProcessArgs.of(decisionArgs).get("COMMENTS", "");
+    }
+
+    /**
+     * Approval steps mutate the shared workflow metadata; restore it so every
+     * invocation measures the same amount of work.
+     */
+    private void resetApprovalState() {
+        pageWorkflowMetadata.clear();
+        pageWorkflowMetadata.putAll(approvalBaseline);
+    }
+
+    // ------------------------------------------------------------------------
+    // In-memory stand-ins
+    // ------------------------------------------------------------------------
+
+    private WorkItem newWorkItem(String payloadPath, InMemoryMetaDataMap workflowMetadata) {
+        WorkflowData workflowData = stub(WorkflowData.class);
+        when(workflowData.getPayload()).thenReturn(payloadPath);
+        when(workflowData.getPayloadType()).thenReturn("JCR_PATH");
+
+        Workflow workflow = stub(Workflow.class);
+        when(workflow.getId()).thenReturn("/var/workflow/instances/server0/2026-01-01/benchmark_1");
+        when(workflow.getInitiator()).thenReturn("admin");
+        when(workflow.getMetaDataMap()).thenReturn(workflowMetadata);
+        when(workflow.getWorkflowData()).thenReturn(workflowData);
+
+        WorkflowNode node = stub(WorkflowNode.class);
+        when(node.getTitle()).thenReturn("Department Approval");
+
+        WorkItem workItem = stub(WorkItem.class);
+        when(workItem.getWorkflow()).thenReturn(workflow);
+        when(workItem.getWorkflowData()).thenReturn(workflowData);
+        when(workItem.getNode()).thenReturn(node);
+        when(workItem.getCurrentAssignee()).thenReturn("reviewer");
+        when(workItem.getMetaDataMap()).thenReturn(new InMemoryMetaDataMap());
+        return workItem;
+    }
+
+    private static Asset newAsset() {
+        Rendition original = newRendition("original", 5L * 1024 * 1024);
+        when(original.getStream()).thenAnswer(invocation -> new ByteArrayInputStream(ORIGINAL_CONTENT));
+        List<Rendition> renditions = new ArrayList<>();
+        renditions.add(original);
+        for (int i = 1; i < RENDITION_COUNT; i++) {
+            renditions.add(newRendition("cq5dam.thumbnail." + (i * 100) + ".png", i * 20_000L));
+        }
+
+        Asset asset = stub(Asset.class);
+        when(asset.getPath()).thenReturn(ASSET_PATH);
+        when(asset.getName()).thenReturn("image.jpg");
+        when(asset.getMimeType()).thenReturn("image/jpeg");
+        when(asset.getOriginal()).thenReturn(original);
+        when(asset.getRenditions()).thenReturn(renditions);
+        when(asset.getMetadata("dc:title")).thenReturn("Benchmark image");
+        return asset;
+    }
+
+    private static Rendition newRendition(String name, long size) {
+        Rendition rendition = stub(Rendition.class);
+        when(rendition.getName()).thenReturn(name);
+        when(rendition.getPath()).thenReturn(ASSET_PATH + "/jcr:content/renditions/" + name);
+        when(rendition.getSize()).thenReturn(size);
+        when(rendition.getMimeType()).thenReturn(name.endsWith(".png") ? "image/png" : "image/jpeg");
+        return rendition;
+    }
+
+    /**
+     * A baseline JPEG header (SOI, APP0, SOF0 of 1920x1080) followed by filler.
+     */
+    private static byte[] newJpegContent(int size) {
+        byte[] header = {
+            (byte) 0xFF, (byte) 0xD8,
+            (byte) 0xFF, (byte) 0xE0, 0x00, 0x10, 'J', 'F', 'I', 'F', 0x00, 0x01, 0x01, 0x00, 0x00, 0x01, 0x00, 0x01,
+            0x00, 0x00,
+            (byte) 0xFF, (byte) 0xC0, 0x00, 0x11, 0x08, 0x04, 0x38, 0x07, (byte) 0x80, 0x03
+        };
+        byte[] content = new byte[size];
+        System.arraycopy(header, 0, content, 0, header.length);
+        for (int i = header.length; i < size; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    /**
+     * Sets an {@code @Reference} field the way the OSGi runtime would.
+     */
+    private static void inject(Object component, String fieldName, Object service) throws ReflectiveOperationException {
+        Field field = component.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(component, service);
+    }
+
+    /**
+     * OSGi configuration with every attribute at its declared default.
+     */
+    private static <C> C configDefaults(Class<C> configType) {
+        return configType.cast(Proxy.newProxyInstance(configType.getClassLoader(), new Class<?>[] {configType},
+            (proxy, method, args) -> method.getDefaultValue()));
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    /**
+     * Adds DAM asset adaptation, which the mock repository does not provide.
+     */
+    private static final class AssetAwareResolver extends ResourceResolverWrapper {
+
+        private final String assetPath;
+        private final Asset asset;
+
+        private AssetAwareResolver(ResourceResolver delegate, String assetPath, Asset asset) {
+            super(delegate);
+            this.assetPath = assetPath;
+            this.asset = asset;
+        }
+
+        @Override
+        public Resource getResource(String path) {
+            Resource resource = super.getResource(path);
+            if (resource == null || !assetPath.equals(path)) {
+                return resource;
+            }
+            return new ResourceWrapper(resource) {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <A> A adaptTo(Class<A> type) {
+                    return type == Asset.class ? (A) asset : super.adaptTo(type);
+                }
+            };
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(WorkflowProcessBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.core.workflows;
+
+import com.adobe.granite.workflow.WorkflowSession;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of service-user ResourceResolvers and their WorkflowSessions.
+ *
+ * Logging in a service user is far more expensive than the workflow call that
+ * follows it, so services that start, query or terminate workflows at high
+ * volume should lease a session from this pool instead of calling
+ * getServiceResourceResolver() per request.
+ *
+ * Usage:
+ * <pre>
+ * try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+ *     WorkflowSession workflowSession = lease.getWorkflowSession();
+ *     // ... one call, or a whole batch of calls
+ * }
+ * </pre>
+ *
+ * Leases are per thread: a nested lease() on a thread that already holds one
+ * returns the same session, so a batch can hold a lease while calling methods
+ * that lease internally. ResourceResolvers are not thread-safe - never hand a
+ * lease to another thread.
+ */
+@Component(service = WorkflowSessionPool.class)
+@Designate(ocd = WorkflowSessionPool.Config.class)
+public class WorkflowSessionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowSessionPool.class);
+
+    @ObjectClassDefinition(
+        name = "Example - Workflow Session Pool",
+        description = "Pools service-user sessions used to start and manage workflows"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Service user subservice")
+        String subservice() default "workflow-service";
+
+        @AttributeDefinition(name = "Maximum sessions", description = "Upper bound of open sessions (leased + idle)")
+        int max_size() default 8;
+
+        @AttributeDefinition(name = "Lease timeout (ms)", description = "How long lease() waits for a free session")
+        long lease_timeout_millis() default 5000;
+
+        @AttributeDefinition(name = "Refresh after idle (ms)",
+            description = "Idle sessions older than this are refreshed on lease to see the latest repository state")
+        long refresh_after_millis() default 1000;
+
+        @AttributeDefinition(name = "Maximum session age (ms)",
+            description = "Sessions older than this are closed and replaced by a fresh login")
+        long max_age_millis() default 600000;
+    }
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    private final BlockingDeque<PooledSession> idle = new LinkedBlockingDeque<>();
+    private final ThreadLocal<Lease> currentLease = new ThreadLocal<>();
+
+    // Pool metrics
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder leaseTimeouts = new LongAdder();
+    private final LongAdder leaseWaitNanos = new LongAdder();
+    private final LongAdder leases = new LongAdder();
+
+    private volatile Semaphore permits;
+    private volatile boolean closed;
+    private Map<String, Object> authInfo;
+    private int maxSize;
+    private long leaseTimeoutMillis;
+    private long refreshAfterMillis;
+    private long maxAgeMillis;
+
+    @Activate
+    protected void activate(Config config) {
+        authInfo = new HashMap<>();
+        authInfo.put(ResourceResolverFactory.SUBSERVICE, config.subservice());
+        maxSize = Math.max(1, config.max_size());
+        leaseTimeoutMillis = Math.max(0, config.lease_timeout_millis());
+        refreshAfterMillis = Math.max(0, config.refresh_after_millis());
+        maxAgeMillis = Math.max(1, config.max_age_millis());
+        permits = new Semaphore(maxSize, true);
+        closed = false;
+        LOG.info("Workflow session pool active: subservice={}, maxSize={}", config.subservice(), maxSize);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        closed = true;
+        PooledSession session;
+        while ((session = idle.poll()) != null) {
+            session.close();
+        }
+        LOG.info("Workflow session pool closed (created={}, reused={}, discarded={})",
+            created.sum(), reused.sum(), discarded.sum());
+    }
+
+    /**
+     * Lease a session for the current thread. Close the lease to return it.
+     *
+     * @return A lease wrapping a live, health-checked session
+     * @throws LoginException if no session could be obtained within the lease timeout
+     */
+    public Lease lease() throws LoginException {
+        Lease current = currentLease.get();
+        if (current != null) {
+            current.depth++;
+            return current;
+        }
+        if (closed) {
+            throw new LoginException("Workflow session pool is closed");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(leaseTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                leaseTimeouts.increment();
+                throw new LoginException("Timed out waiting for a pooled workflow session");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoginException("Interrupted while waiting for a pooled workflow session");
+        } finally {
+            leaseWaitNanos.add(System.nanoTime() - waitStart);
+        }
+
+        try {
+            Lease lease = new Lease(checkOut());
+            currentLease.set(lease);
+            leases.increment();
+            return lease;
+        } catch (LoginException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Take an idle session (validating and refreshing it) or log in a new one.
+     */
+    private PooledSession checkOut() throws LoginException {
+        long now = System.currentTimeMillis();
+        PooledSession session;
+        while ((session = idle.pollFirst()) != null) {
+            if (!session.isHealthy(now)) {
+                discard(session);
+                continue;
+            }
+            if (now - session.lastReturned > refreshAfterMillis) {
+                try {
+                    session.resolver.refresh();
+                } catch (RuntimeException e) {
+                    // Already out of the idle queue: close it or it leaks
+                    discard(session);
+                    throw e;
+                }
+                refreshed.increment();
+            }
+            reused.increment();
+            return session;
+        }
+        return open();
+    }
+
+    private PooledSession open() throws LoginException {
+        ResourceResolver resolver = resolverFactory.getServiceResourceResolver(authInfo);
+        WorkflowSession workflowSession = resolver.adaptTo(WorkflowSession.class);
+        if (workflowSession == null) {
+            resolver.close();
+            throw new LoginException("Unable to obtain WorkflowSession");
+        }
+        created.increment();
+        return new PooledSession(resolver, workflowSession);
+    }
+
+    private void checkIn(PooledSession session, boolean invalid) {
+        try {
+            if (invalid || closed || !session.resolver.isLive()) {
+                discard(session);
+                return;
+            }
+            if (session.resolver.hasChanges()) {
+                // Never leak uncommitted changes into the next lease
+                LOG.warn("Reverting uncommitted changes on returned workflow session");
+                session.resolver.revert();
+            }
+            session.lastReturned = System.currentTimeMillis();
+            idle.offerFirst(session);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledSession session) {
+        discarded.increment();
+        session.close();
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getLeasedCount() {
+        Semaphore current = permits;
+        return current == null ? 0 : maxSize - current.availablePermits();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    public long getReusedCount() {
+        return reused.sum();
+    }
+
+    public long getRefreshedCount() {
+        return refreshed.sum();
+    }
+
+    public long getDiscardedCount() {
+        return discarded.sum();
+    }
+
+    public long getLeaseTimeoutCount() {
+        return leaseTimeouts.sum();
+    }
+
+    /**
+     * @return Average time callers waited for a session, in milliseconds
+     */
+    public double getAverageLeaseWaitMillis() {
+        long count = leases.sum() + leaseTimeouts.sum();
+        return count == 0 ? 0 : leaseWaitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * A session leased by the current thread.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final PooledSession session;
+        private int depth = 1;
+        private boolean invalid;
+
+        private Lease(PooledSession session) {
+            this.session = session;
+        }
+
+        public WorkflowSession getWorkflowSession() {
+            return session.workflowSession;
+        }
+
+        public ResourceResolver getResourceResolver() {
+            return session.resolver;
+        }
+
+        /**
+         * Mark the session as unusable (e.g. after a repository error) so it is
+         * closed rather than returned to the pool.
+         */
+        public void invalidate() {
+            invalid = true;
+        }
+
+        @Override
+        public void close() {
+            if (--depth > 0) {
+                return;
+            }
+            currentLease.remove();
+            checkIn(session, invalid);
+        }
+    }
+
+    private final class PooledSession {
+
+        private final ResourceResolver resolver;
+        private final WorkflowSession workflowSession;
+        private final long createdAt = System.currentTimeMillis();
+        private long lastReturned = createdAt;
+
+        private PooledSession(ResourceResolver resolver, WorkflowSession workflowSession) {
+            this.resolver = resolver;
+            this.workflowSession = workflowSession;
+        }
+
+        private boolean isHealthy(long now) {
+            return resolver.isLive() && now - createdAt < maxAgeMillis;
+        }
+
+        private void close() {
+            if (resolver.isLive()) {
+                resolver.close();
+            }
+        }
+    }
+}
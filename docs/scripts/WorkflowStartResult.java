@@ -0,0 +1,92 @@
+package com.example.core.workflows;
+
+/**
+ * Typed outcome of a workflow start.
+ *
+ * Unlike the String-returning start methods, which return null for every kind
+ * of failure, this tells callers why a start did not happen so they can decide
+ * whether to retry (THROTTLED, REJECTED, NO_SESSION) or give up.
+ */
+public final class WorkflowStartResult {
+
+    public enum Status {
+        /** A new instance was started */
+        STARTED,
+        /** The model was already running for the payload; the existing instance is returned */
+        ALREADY_RUNNING,
+        /** The workflow model does not exist */
+        MODEL_NOT_FOUND,
+        /** No start permit within the throttle timeout */
+        THROTTLED,
+        /** The async start queue was full */
+        REJECTED,
+        /** No workflow session could be obtained */
+        NO_SESSION,
+        /** The workflow engine failed to start the instance */
+        FAILED
+    }
+
+    private final Status status;
+    private final String resourcePath;
+    private final String workflowId;
+    private final String message;
+    private final Throwable cause;
+
+    private WorkflowStartResult(Status status, String resourcePath, String workflowId,
+                                String message, Throwable cause) {
+        this.status = status;
+        this.resourcePath = resourcePath;
+        this.workflowId = workflowId;
+        this.message = message;
+        this.cause = cause;
+    }
+
+    static WorkflowStartResult started(String resourcePath, String workflowId) {
+        return new WorkflowStartResult(Status.STARTED, resourcePath, workflowId, null, null);
+    }
+
+    static WorkflowStartResult alreadyRunning(String resourcePath, String workflowId) {
+        return new WorkflowStartResult(Status.ALREADY_RUNNING, resourcePath, workflowId, null, null);
+    }
+
+    static WorkflowStartResult failure(Status status, String resourcePath, String message, Throwable cause) {
+        return new WorkflowStartResult(status, resourcePath, null, message, cause);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getResourcePath() {
+        return resourcePath;
+    }
+
+    /**
+     * @return The started or already running workflow ID, or null if no instance is running
+     */
+    public String getWorkflowId() {
+        return workflowId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * @return true if an instance is running for the payload (newly started or existing)
+     */
+    public boolean isSuccess() {
+        return status == Status.STARTED || status == Status.ALREADY_RUNNING;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+            ? String.format("WorkflowStartResult[%s, %s -> %s]", status, resourcePath, workflowId)
+            : String.format("WorkflowStartResult[%s, %s: %s]", status, resourcePath, message);
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.core.workflows;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive token bucket for programmatic workflow starts.
+ *
+ * Every start path acquires a token before calling startWorkflow(). Tokens
+ * are acquired before a pooled session is leased, so a throttled caller waits
+ * without holding one, and tokens that end up unused are released. The refill
+ * rate adapts to how the workflow engine is coping: it backs off
+ * multiplicatively while the number of running instances or the observed start
+ * latency is above target, and recovers additively once both are back under
+ * target (AIMD). This keeps bulk jobs and integrations from flooding the
+ * Granite workflow job queue and starving author traffic.
+ */
+@Component(service = WorkflowStartThrottle.class)
+@Designate(ocd = WorkflowStartThrottle.Config.class)
+public class WorkflowStartThrottle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowStartThrottle.class);
+
+    // Weight of the newest sample in the start latency moving average
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    @ObjectClassDefinition(
+        name = "Example - Workflow Start Throttle",
+        description = "Adaptive rate limit for programmatic workflow starts"
+    )
+    public @interface Config {
+
+        @AttributeDefinition(name = "Enabled")
+        boolean enabled() default true;
+
+        @AttributeDefinition(name = "Initial rate (starts/s)")
+        double initial_rate() default 50;
+
+        @AttributeDefinition(name = "Minimum rate (starts/s)")
+        double min_rate() default 5;
+
+        @AttributeDefinition(name = "Maximum rate (starts/s)")
+        double max_rate() default 200;
+
+        @AttributeDefinition(name = "Burst", description = "Tokens that can accumulate while idle")
+        int burst() default 50;
+
+        @AttributeDefinition(name = "Target running workflows",
+            description = "Rate backs off while more instances than this are RUNNING")
+        int target_running_workflows() default 1500;
+
+        @AttributeDefinition(name = "Target start latency (ms)",
+            description = "Rate backs off while the average startWorkflow() latency is above this")
+        long target_start_latency_millis() default 250;
+
+        @AttributeDefinition(name = "Adjust interval (ms)", description = "How often the rate is re-evaluated")
+        long adjust_interval_millis() default 5000;
+
+        @AttributeDefinition(name = "Decrease factor", description = "Rate multiplier when backing off")
+        double decrease_factor() default 0.7;
+
+        @AttributeDefinition(name = "Increase step (starts/s)", description = "Rate added per healthy interval")
+        double increase_step() default 5;
+
+        @AttributeDefinition(name = "Acquire timeout (ms)", description = "Longest a caller waits for a token")
+        long acquire_timeout_millis() default 30000;
+    }
+
+    @Reference
+    private WorkflowEngineLoadProbe loadProbe;
+
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitedNanos = new LongAdder();
+
+    private volatile Config config;
+
+    // Token bucket state, guarded by this
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastAdjustMillis;
+    private double latencyMillisAverage;
+
+    @Activate
+    @Modified
+    protected synchronized void activate(Config config) {
+        this.config = config;
+        rate = clamp(config.initial_rate());
+        tokens = Math.max(1, config.burst());
+        lastRefillNanos = System.nanoTime();
+        lastAdjustMillis = System.currentTimeMillis();
+        latencyMillisAverage = 0;
+        LOG.info("Workflow start throttle: enabled={}, rate={}/s, burst={}",
+            config.enabled(), rate, config.burst());
+    }
+
+    /**
+     * Wait for permission to start one workflow.
+     *
+     * @return true if the caller may start, false if no token became available
+     *         within the acquire timeout
+     */
+    public boolean acquire() {
+        Config current = config;
+        if (!current.enabled()) {
+            return true;
+        }
+        adjustIfDue(current);
+
+        long waitNanos = reserve(TimeUnit.MILLISECONDS.toNanos(current.acquire_timeout_millis()));
+        if (waitNanos < 0) {
+            rejected.increment();
+            return false;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.increment();
+                return false;
+            }
+            waitedNanos.add(waitNanos);
+        }
+        granted.increment();
+        return true;
+    }
+
+    /**
+     * Take a permit only if one is available right now, without waiting.
+     * Lets callers that hold a pooled session give it back before they wait
+     * in {@link #acquire()}.
+     *
+     * @return true if the caller may start
+     */
+    public boolean tryAcquire() {
+        Config current = config;
+        if (!current.enabled()) {
+            return true;
+        }
+        adjustIfDue(current);
+        if (reserve(0) < 0) {
+            return false;
+        }
+        granted.increment();
+        return true;
+    }
+
+    /**
+     * Return a permit that was not used, e.g. because the start turned out to
+     * be a duplicate of a running instance or no session was available.
+     */
+    public void release() {
+        Config current = config;
+        if (!current.enabled()) {
+            return;
+        }
+        synchronized (this) {
+            tokens = Math.min(Math.max(1, current.burst()), tokens + 1);
+        }
+        granted.decrement();
+    }
+
+    /**
+     * Report how long a startWorkflow() call took, feeding the adaptive rate.
+     *
+     * @param latencyNanos Duration of the start call
+     */
+    public synchronized void recordStart(long latencyNanos) {
+        double latencyMillis = latencyNanos / 1_000_000.0;
+        latencyMillisAverage = latencyMillisAverage == 0
+            ? latencyMillis
+            : latencyMillisAverage + LATENCY_SMOOTHING * (latencyMillis - latencyMillisAverage);
+    }
+
+    /**
+     * Take a token, possibly from the future. Returns how long the caller must
+     * wait before using it, or -1 if that would exceed the timeout.
+     */
+    private synchronized long reserve(long timeoutNanos) {
+        long now = System.nanoTime();
+        double capacity = Math.max(1, config.burst());
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * rate);
+        lastRefillNanos = now;
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        long waitNanos = (long) ((1 - tokens) / rate * 1_000_000_000L);
+        if (waitNanos > timeoutNanos) {
+            return -1;
+        }
+        // Negative balance queues later callers behind this reservation
+        tokens -= 1;
+        return waitNanos;
+    }
+
+    private void adjustIfDue(Config current) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (now - lastAdjustMillis < current.adjust_interval_millis()) {
+                return;
+            }
+            lastAdjustMillis = now;
+        }
+
+        // Probe outside the lock; it may run a repository query
+        int running = loadProbe.getRunningWorkflowCount();
+
+        synchronized (this) {
+            double previous = rate;
+            boolean overloaded = running > current.target_running_workflows()
+                || latencyMillisAverage > current.target_start_latency_millis();
+            if (overloaded) {
+                rate = clamp(rate * current.decrease_factor());
+            } else if (running < current.target_running_workflows() * 0.8) {
+                rate = clamp(rate + current.increase_step());
+            }
+            if (rate != previous) {
+                LOG.debug("Start rate {} -> {}/s (running={}, avgLatency={}ms)",
+                    previous, rate, running, latencyMillisAverage);
+            }
+        }
+    }
+
+    private double clamp(double value) {
+        Config current = config;
+        double min = Math.max(0.1, current.min_rate());
+        return Math.max(min, Math.min(Math.max(min, current.max_rate()), value));
+    }
+
+    // ------------------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------------------
+
+    public synchronized double getCurrentRate() {
+        return rate;
+    }
+
+    public synchronized double getAverageStartLatencyMillis() {
+        return latencyMillisAverage;
+    }
+
+    public long getGrantedCount() {
+        return granted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public double getTotalWaitMillis() {
+        return waitedNanos.sum() / 1_000_000.0;
+    }
+}
@@ -6,15 +6,32 @@ import com.adobe.granite.workflow.exec.Workflow;
 import com.adobe.granite.workflow.exec.WorkflowData;
 import com.adobe.granite.workflow.model.WorkflowModel;
 import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
-import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service template for programmatically starting workflows in AEM as a Cloud Service.
@@ -23,12 +40,43 @@ import java.util.Map;
  * - Event listeners
  * - Servlets
  * - Custom services
+ *
+ * Sessions are leased from {@link WorkflowSessionPool} rather than logging the
+ * service user in and out on every call. All start paths go through
+ * {@link WorkflowStartThrottle} so callers cannot flood the workflow engine.
  */
 @Component(service = WorkflowStarterTemplate.class)
+@Designate(ocd = WorkflowStarterTemplate.Config.class)
 public class WorkflowStarterTemplate {
     
     private static final Logger LOG = LoggerFactory.getLogger(WorkflowStarterTemplate.class);
     
+    private static final String INSTANCES_ROOT = "/var/workflow/instances/";
+    
+    // Step name in WorkflowMetrics
+    private static final String METRICS_STEP = "workflowStart";
+    
+    @ObjectClassDefinition(
+        name = "Example - Workflow Starter",
+        description = "Programmatic workflow start, status and termination"
+    )
+    public @interface Config {
+        
+        @AttributeDefinition(name = "Status cache TTL (ms)",
+            description = "How long getWorkflowStatuses() may serve a cached state (0 disables the cache)")
+        long status_cache_ttl_millis() default 2000;
+        
+        @AttributeDefinition(name = "Status cache size")
+        int status_cache_max_entries() default 20000;
+        
+        @AttributeDefinition(name = "Async start threads", description = "Threads running startWorkflowAsync()")
+        int async_threads() default 4;
+        
+        @AttributeDefinition(name = "Async start queue capacity",
+            description = "Pending async starts; further submissions complete as REJECTED")
+        int async_queue_capacity() default 1000;
+    }
+    
     // Common workflow model paths in AEM Cloud Service
     // NOTE: DAM Update Asset workflow replaced by Asset Microservices in Cloud Service
     // Use post-processing workflows for custom asset operations
@@ -36,66 +84,192 @@ public class WorkflowStarterTemplate {
     private static final String REQUEST_FOR_DEACTIVATION = "/var/workflow/models/request_for_deactivation";
     
     @Reference
-    private ResourceResolverFactory resolverFactory;
+    private WorkflowSessionPool sessionPool;
+    
+    @Reference
+    private BulkWorkflowStarter bulkWorkflowStarter;
+    
+    @Reference
+    private WorkflowStartThrottle startThrottle;
+    
+    @Reference
+    private WorkflowModelCache modelCache;
+    
+    @Reference
+    private InFlightWorkflowIndex inFlightIndex;
+    
+    @Reference
+    private BulkWorkflowTerminator bulkWorkflowTerminator;
+    
+    @Reference
+    private WorkflowMetrics metrics;
+    
+    private TtlCache<String, String> statusCache;
+    
+    private ExecutorService asyncExecutor;
+    
+    @Activate
+    protected void activate(Config config) {
+        statusCache = new TtlCache<>(config.status_cache_ttl_millis(), config.status_cache_max_entries());
+        
+        int threads = Math.max(1, config.async_threads());
+        AtomicInteger threadCount = new AtomicInteger();
+        asyncExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, config.async_queue_capacity())),
+            runnable -> {
+                Thread thread = new Thread(runnable, "workflow-start-async-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    @Deactivate
+    protected void deactivate() {
+        asyncExecutor.shutdown();
+        try {
+            if (!asyncExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOG.warn("Pending async workflow starts dropped on deactivation: {}",
+                    asyncExecutor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            asyncExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
     
     /**
      * Start a workflow for a given resource path.
+     * If the same model is already running for the resource, the running
+     * instance's ID is returned instead of starting a duplicate.
      * 
      * @param resourcePath The JCR path of the resource to process
      * @param workflowModelPath The path to the workflow model
      * @param metadata Optional metadata to pass to the workflow
-     * @return The started workflow ID, or null if failed
+     * @return The started (or already running) workflow ID, or null if failed or throttled
      */
     public String startWorkflow(String resourcePath, String workflowModelPath, Map<String, Object> metadata) {
-        ResourceResolver resolver = null;
-        
+        return startWorkflowWithResult(resourcePath, workflowModelPath, metadata).getWorkflowId();
+    }
+    
+    /**
+     * Start a workflow and report a typed outcome instead of null on failure.
+     * 
+     * @param resourcePath The JCR path of the resource to process
+     * @param workflowModelPath The path to the workflow model
+     * @param metadata Optional metadata to pass to the workflow
+     * @return The outcome, never null
+     */
+    public WorkflowStartResult startWorkflowWithResult(String resourcePath, String workflowModelPath,
+                                                       Map<String, Object> metadata) {
+        WorkflowMetrics.Execution execution = metrics.start(METRICS_STEP);
         try {
-            // Get service resource resolver
-            Map<String, Object> authInfo = new HashMap<>();
-            authInfo.put(ResourceResolverFactory.SUBSERVICE, "workflow-service");
-            
-            resolver = resolverFactory.getServiceResourceResolver(authInfo);
-            
-            // Get workflow session
-            WorkflowSession workflowSession = resolver.adaptTo(WorkflowSession.class);
-            if (workflowSession == null) {
-                LOG.error("Unable to obtain WorkflowSession");
-                return null;
+            WorkflowStartResult result = startWorkflowWithResult(resourcePath, workflowModelPath, metadata,
+                execution);
+            if (!result.isSuccess()) {
+                execution.fail();
             }
+            return result;
+        } finally {
+            execution.end();
+        }
+    }
+    
+    private WorkflowStartResult startWorkflowWithResult(String resourcePath, String workflowModelPath,
+                                                        Map<String, Object> metadata,
+                                                        WorkflowMetrics.Execution execution) {
+        // Wait for a permit before leasing, so throttled callers do not hold pooled sessions
+        if (!startThrottle.acquire()) {
+            LOG.warn("Workflow start throttled for resource: {}", resourcePath);
+            return WorkflowStartResult.failure(WorkflowStartResult.Status.THROTTLED, resourcePath,
+                "No start permit within the throttle timeout", null);
+        }
+        
+        boolean[] attempted = new boolean[1];
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            WorkflowSession workflowSession = lease.getWorkflowSession();
             
-            // Get workflow model
-            WorkflowModel workflowModel = workflowSession.getModel(workflowModelPath);
+            // Get workflow model (cached; invalidated when the model changes)
+            WorkflowModel workflowModel = modelCache.getModel(workflowSession, workflowModelPath);
             if (workflowModel == null) {
                 LOG.error("Workflow model not found: {}", workflowModelPath);
-                return null;
+                return WorkflowStartResult.failure(WorkflowStartResult.Status.MODEL_NOT_FOUND, resourcePath,
+                    "Workflow model not found: " + workflowModelPath, null);
             }
+            execution.phase(WorkflowMetrics.Phase.RESOLVE);
             
-            // Create workflow data (payload)
-            WorkflowData workflowData = workflowSession.newWorkflowData("JCR_PATH", resourcePath);
+            String workflowId = inFlightIndex.startIfAbsent(resourcePath, workflowModelPath, workflowSession, () -> {
+                attempted[0] = true;
+                return doStartWorkflow(workflowSession, workflowModel, resourcePath, metadata);
+            });
+            execution.phase(WorkflowMetrics.Phase.PROCESS);
             
-            // Start the workflow
-            Workflow workflow = workflowSession.startWorkflow(workflowModel, workflowData, metadata);
-            
-            String workflowId = workflow.getId();
-            LOG.info("Successfully started workflow: {} for resource: {}", workflowId, resourcePath);
-            
-            return workflowId;
+            return attempted[0]
+                ? WorkflowStartResult.started(resourcePath, workflowId)
+                : WorkflowStartResult.alreadyRunning(resourcePath, workflowId);
             
         } catch (LoginException e) {
-            LOG.error("Failed to obtain resource resolver", e);
-            return null;
+            LOG.error("Failed to obtain workflow session", e);
+            return WorkflowStartResult.failure(WorkflowStartResult.Status.NO_SESSION, resourcePath,
+                e.getMessage(), e);
             
         } catch (WorkflowException e) {
             LOG.error("Failed to start workflow for resource: {}", resourcePath, e);
-            return null;
+            return WorkflowStartResult.failure(WorkflowStartResult.Status.FAILED, resourcePath,
+                e.getMessage(), e);
             
         } finally {
-            if (resolver != null && resolver.isLive()) {
-                resolver.close();
+            if (!attempted[0]) {
+                // Duplicate, missing model or no session: the permit was not used
+                startThrottle.release();
             }
         }
     }
     
+    /**
+     * Start a workflow without blocking the caller. The start runs on a
+     * dedicated, bounded executor; use this from servlets that should return
+     * immediately, or to pipeline many starts from one thread.
+     * 
+     * The future always completes normally - failures, including a full
+     * executor queue (REJECTED), are reported through the result status.
+     * 
+     * @param resourcePath The JCR path of the resource to process
+     * @param workflowModelPath The path to the workflow model
+     * @param metadata Optional metadata to pass to the workflow (copied)
+     * @return Future outcome of the start
+     */
+    public CompletableFuture<WorkflowStartResult> startWorkflowAsync(String resourcePath, String workflowModelPath,
+                                                                     Map<String, Object> metadata) {
+        Map<String, Object> metadataCopy = metadata != null ? new HashMap<>(metadata) : null;
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> startWorkflowWithResult(resourcePath, workflowModelPath, metadataCopy), asyncExecutor)
+                .exceptionally(e -> WorkflowStartResult.failure(
+                    WorkflowStartResult.Status.FAILED, resourcePath, e.getMessage(), e));
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Async workflow start rejected for resource: {} (queue full)", resourcePath);
+            return CompletableFuture.completedFuture(WorkflowStartResult.failure(
+                WorkflowStartResult.Status.REJECTED, resourcePath, "Async start queue is full", e));
+        }
+    }
+    
+    private String doStartWorkflow(WorkflowSession workflowSession, WorkflowModel workflowModel,
+                                   String resourcePath, Map<String, Object> metadata) throws WorkflowException {
+        // Create workflow data (payload)
+        WorkflowData workflowData = workflowSession.newWorkflowData("JCR_PATH", resourcePath);
+        
+        // Start the workflow
+        long startNanos = System.nanoTime();
+        Workflow workflow = workflowSession.startWorkflow(workflowModel, workflowData, metadata);
+        startThrottle.recordStart(System.nanoTime() - startNanos);
+        
+        String workflowId = workflow.getId();
+        LOG.info("Successfully started workflow: {} for resource: {}", workflowId, resourcePath);
+        
+        return workflowId;
+    }
+    
     /**
      * Start a workflow with custom metadata.
      * 
@@ -155,19 +329,35 @@ public class WorkflowStarterTemplate {
      * @return Number of successfully started workflows
      */
     public int bulkStartWorkflows(java.util.List<String> resourcePaths, String workflowModelPath) {
-        LOG.info("Starting bulk workflows for {} resources", resourcePaths.size());
-        
-        int successCount = 0;
-        
-        for (String resourcePath : resourcePaths) {
-            String workflowId = startWorkflow(resourcePath, workflowModelPath, null);
-            if (workflowId != null) {
-                successCount++;
-            }
-        }
-        
-        LOG.info("Successfully started {} out of {} workflows", successCount, resourcePaths.size());
-        return successCount;
+        return bulkStart(resourcePaths, workflowModelPath).getSuccessCount();
+    }
+    
+    /**
+     * Bulk start workflows and report the outcome for every resource.
+     * The model is resolved once and workflows are started in chunks over
+     * shared sessions (see {@link BulkWorkflowStarter}).
+     * 
+     * @param resourcePaths List of resource paths
+     * @param workflowModelPath The workflow model to use
+     * @return Workflow ID or failure reason per resource path
+     */
+    public BulkStartResult bulkStart(java.util.List<String> resourcePaths, String workflowModelPath) {
+        return bulkWorkflowStarter.startAll(resourcePaths, workflowModelPath, null);
+    }
+    
+    /**
+     * Bulk start workflows on parallel virtual threads, each with its own session.
+     * Use for very large payload sets; the caller blocks while the work queue is
+     * full and workers back off while the workflow engine is saturated.
+     * 
+     * @param resourcePaths List of resource paths
+     * @param workflowModelPath The workflow model to use
+     * @param parallelism Number of concurrent workers
+     * @return Workflow ID or failure reason per resource path
+     */
+    public BulkStartResult bulkStartParallel(java.util.List<String> resourcePaths, String workflowModelPath,
+                                             int parallelism) {
+        return bulkWorkflowStarter.startAllParallel(resourcePaths, workflowModelPath, null, parallelism);
     }
     
     /**
@@ -177,34 +367,95 @@ public class WorkflowStarterTemplate {
      * @return Workflow state or null
      */
     public String getWorkflowStatus(String workflowId) {
-        ResourceResolver resolver = null;
-        
-        try {
-            Map<String, Object> authInfo = new HashMap<>();
-            authInfo.put(ResourceResolverFactory.SUBSERVICE, "workflow-service");
-            
-            resolver = resolverFactory.getServiceResourceResolver(authInfo);
-            WorkflowSession workflowSession = resolver.adaptTo(WorkflowSession.class);
-            
-            if (workflowSession != null) {
-                Workflow workflow = workflowSession.getWorkflow(workflowId);
-                if (workflow != null) {
-                    return workflow.getState();
-                }
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            Workflow workflow = lease.getWorkflowSession().getWorkflow(workflowId);
+            if (workflow != null) {
+                return workflow.getState();
             }
             
         } catch (Exception e) {
             LOG.error("Failed to get workflow status for: {}", workflowId, e);
-            
-        } finally {
-            if (resolver != null && resolver.isLive()) {
-                resolver.close();
-            }
         }
         
         return null;
     }
     
+    /**
+     * Get the states of many workflow instances using one session.
+     * States may be served from a short-TTL cache (see configuration), which
+     * keeps frequently refreshed dashboards off the repository.
+     * 
+     * @param workflowIds The workflow instance IDs
+     * @return Workflow state per ID, in request order; unknown IDs are omitted
+     */
+    public Map<String, String> getWorkflowStatuses(Collection<String> workflowIds) {
+        return getWorkflowStatuses(workflowIds, true);
+    }
+    
+    /**
+     * Get the states of many workflow instances using one session.
+     * 
+     * @param workflowIds The workflow instance IDs
+     * @param useCache false to always read the current state from the repository
+     * @return Workflow state per ID, in request order; unknown IDs are omitted
+     */
+    public Map<String, String> getWorkflowStatuses(Collection<String> workflowIds, boolean useCache) {
+        Map<String, String> statuses = new LinkedHashMap<>();
+        List<String> uncached = new ArrayList<>();
+        
+        for (String workflowId : workflowIds) {
+            String cached = useCache ? statusCache.get(workflowId) : null;
+            if (cached != null) {
+                statuses.put(workflowId, cached);
+            } else {
+                statuses.put(workflowId, null); // keep request order
+                uncached.add(workflowId);
+            }
+        }
+        
+        if (!uncached.isEmpty()) {
+            try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+                ResourceResolver resolver = lease.getResourceResolver();
+                WorkflowSession workflowSession = lease.getWorkflowSession();
+                for (String workflowId : uncached) {
+                    String state = readState(resolver, workflowSession, workflowId);
+                    if (state != null) {
+                        statuses.put(workflowId, state);
+                        statusCache.put(workflowId, state);
+                    }
+                }
+            } catch (LoginException e) {
+                LOG.error("Failed to obtain workflow session for {} status lookups", uncached.size(), e);
+            }
+        }
+        
+        statuses.values().removeIf(Objects::isNull);
+        return statuses;
+    }
+    
+    /**
+     * Read an instance state. The status property on the instance node is
+     * read directly, which avoids loading the whole instance (history, work
+     * items, metadata) the way getWorkflow() does.
+     */
+    private String readState(ResourceResolver resolver, WorkflowSession workflowSession, String workflowId) {
+        try {
+            if (workflowId.startsWith(INSTANCES_ROOT)) {
+                Resource instance = resolver.getResource(workflowId);
+                String state = instance != null ? instance.getValueMap().get("status", String.class) : null;
+                if (state != null) {
+                    return state;
+                }
+            }
+            Workflow workflow = workflowSession.getWorkflow(workflowId);
+            return workflow != null ? workflow.getState() : null;
+            
+        } catch (Exception e) {
+            LOG.warn("Failed to get workflow status for: {}", workflowId, e);
+            return null;
+        }
+    }
+    
     /**
      * Terminate a running workflow.
      * 
@@ -212,33 +463,39 @@ public class WorkflowStarterTemplate {
      * @return true if successfully terminated
      */
     public boolean terminateWorkflow(String workflowId) {
-        ResourceResolver resolver = null;
-        
-        try {
-            Map<String, Object> authInfo = new HashMap<>();
-            authInfo.put(ResourceResolverFactory.SUBSERVICE, "workflow-service");
-            
-            resolver = resolverFactory.getServiceResourceResolver(authInfo);
-            WorkflowSession workflowSession = resolver.adaptTo(WorkflowSession.class);
+        try (WorkflowSessionPool.Lease lease = sessionPool.lease()) {
+            WorkflowSession workflowSession = lease.getWorkflowSession();
             
-            if (workflowSession != null) {
-                Workflow workflow = workflowSession.getWorkflow(workflowId);
-                if (workflow != null) {
-                    workflowSession.terminateWorkflow(workflow);
-                    LOG.info("Successfully terminated workflow: {}", workflowId);
-                    return true;
-                }
+            Workflow workflow = workflowSession.getWorkflow(workflowId);
+            if (workflow != null) {
+                workflowSession.terminateWorkflow(workflow);
+                inFlightIndex.remove(workflowId);
+                statusCache.invalidate(workflowId);
+                LOG.info("Successfully terminated workflow: {}", workflowId);
+                return true;
             }
             
         } catch (Exception e) {
             LOG.error("Failed to terminate workflow: {}", workflowId, e);
-            
-        } finally {
-            if (resolver != null && resolver.isLive()) {
-                resolver.close();
-            }
         }
         
         return false;
     }
+    
+    /**
+     * Terminate many workflows in chunks over shared sessions.
+     * For very large clean-ups (e.g. 100k stale instances) prefer
+     * {@link BulkWorkflowTerminator#scheduleTermination} so the work runs as a
+     * resumable Sling job with progress reporting.
+     * 
+     * @param workflowIds The workflow instance IDs
+     * @return Outcome per workflow ID
+     */
+    public BulkTerminateResult bulkTerminateWorkflows(List<String> workflowIds) {
+        BulkTerminateResult result = bulkWorkflowTerminator.terminateAll(workflowIds, null);
+        for (String workflowId : result.getTerminated()) {
+            statusCache.invalidate(workflowId);
+        }
+        return result;
+    }
 }
@@ -5,11 +5,20 @@ import com.adobe.granite.workflow.WorkflowSession;
 import com.adobe.granite.workflow.exec.WorkItem;
 import com.adobe.granite.workflow.exec.WorkflowProcess;
 import com.adobe.granite.workflow.metadata.MetaDataMap;
-import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import com.example.core.workflows.AssetSnapshot;
+import com.example.core.workflows.CommitCoalescer;
+import com.example.core.workflows.ContentFingerprintIndex;
+import com.example.core.workflows.PayloadPaths;
+import com.example.core.workflows.ProcessArgs;
+import com.example.core.workflows.StreamingContentInspector;
+import com.example.core.workflows.WorkflowMetrics;
 import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +52,20 @@ public class CustomMetadataExtractorWorkflow implements WorkflowProcess {
     private static final String PROP_EXTRACTED_DATE = "customExtractedDate";
     private static final String PROP_PROCESSING_STATUS = "customProcessingStatus";
     private static final String PROP_FILE_SIZE_CATEGORY = "customFileSizeCategory";
+    private static final String PROP_CONTENT_INSPECTION = "customContentInspection";
+    
+    private static final String PROCESSOR_NAME = "customMetadataExtractor";
+    // Bump when the extraction changes so unchanged assets are extracted again
+    private static final String PROCESSOR_VERSION = "1";
+    
+    @Reference
+    private StreamingContentInspector contentInspector;
+    
+    @Reference
+    private ContentFingerprintIndex fingerprintIndex;
+    
+    @Reference
+    private WorkflowMetrics metrics;
     
     @Override
     public void execute(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap) 
@@ -50,6 +73,7 @@ public class CustomMetadataExtractorWorkflow implements WorkflowProcess {
         
         LOG.info("Starting custom metadata extraction");
         
+        WorkflowMetrics.Execution execution = metrics.start(PROCESSOR_NAME);
         try {
             // Get ResourceResolver from WorkflowSession
             ResourceResolver resolver = workflowSession.adaptTo(ResourceResolver.class);
@@ -61,82 +85,125 @@ public class CustomMetadataExtractorWorkflow implements WorkflowProcess {
             String assetPath = workItem.getWorkflowData().getPayload().toString();
             LOG.debug("Processing asset: {}", assetPath);
             
-            // Get asset resource
-            Resource assetResource = resolver.getResource(assetPath);
-            if (assetResource == null) {
+            // Get asset resource; the snapshot reads everything at most once per execution
+            AssetSnapshot snapshot = AssetSnapshot.of(resolver, assetPath);
+            if (snapshot == null) {
                 LOG.warn("Asset not found: {}", assetPath);
                 return;
             }
+            execution.phase(WorkflowMetrics.Phase.RESOLVE);
             
             // Adapt to Asset
-            Asset asset = assetResource.adaptTo(Asset.class);
-            if (asset == null) {
+            if (snapshot.getAsset() == null) {
                 LOG.warn("Resource is not a DAM asset: {}", assetPath);
                 return;
             }
+            execution.phase(WorkflowMetrics.Phase.ADAPT);
+            
+            // Skip assets whose original has not changed since the last extraction
+            boolean force = ProcessArgs.of(metaDataMap).getBoolean(ContentFingerprintIndex.FORCE_ARG, false);
+            ContentFingerprintIndex.Check fingerprint = fingerprintIndex.check(snapshot, PROCESSOR_NAME,
+                PROCESSOR_VERSION, force);
+            if (fingerprint.isUnchanged()) {
+                LOG.info("Asset unchanged since last extraction, skipping: {}", assetPath);
+                return;
+            }
             
             // Extract and store custom metadata
-            extractCustomMetadata(asset, assetResource, resolver);
+            extractCustomMetadata(snapshot, resolver, fingerprint, execution);
             
             // Update workflow metadata
             MetaDataMap workflowMetadata = workItem.getWorkflow().getMetaDataMap();
             workflowMetadata.put("lastProcessedAsset", assetPath);
             workflowMetadata.put("processingComplete", true);
+            execution.phase(WorkflowMetrics.Phase.PROCESS);
             
             LOG.info("Custom metadata extraction completed for: {}", assetPath);
             
         } catch (Exception e) {
             LOG.error("Failed to extract custom metadata", e);
+            execution.fail();
             throw new WorkflowException("Metadata extraction failed", e);
+            
+        } finally {
+            execution.end();
         }
     }
     
     /**
      * Extracts custom metadata from the asset and stores in metadata node.
+     * The commit is timed as its own phase of the execution.
      */
-    private void extractCustomMetadata(Asset asset, Resource assetResource, ResourceResolver resolver) {
+    private void extractCustomMetadata(AssetSnapshot snapshot, ResourceResolver resolver,
+                                       ContentFingerprintIndex.Check fingerprint,
+                                       WorkflowMetrics.Execution execution) {
         
         // Get metadata resource
-        Resource metadataResource = assetResource.getChild("jcr:content/metadata");
+        Resource metadataResource = snapshot.getMetadataResource();
         if (metadataResource == null) {
-            LOG.warn("Metadata resource not found for: {}", assetResource.getPath());
+            LOG.warn("Metadata resource not found for: {}", snapshot.getPath());
             return;
         }
         
-        ModifiableValueMap metadata = metadataResource.adaptTo(ModifiableValueMap.class);
-        if (metadata == null) {
+        if (metadataResource.adaptTo(ModifiableValueMap.class) == null) {
             LOG.warn("Cannot adapt metadata resource to ModifiableValueMap");
             return;
         }
         
+        // Example 1: Categorize by file size
+        Rendition original = snapshot.getOriginal();
+        long fileSize = original != null ? original.getSize() : 0;
+        String sizeCategory = categorizeFileSize(fileSize);
+        
+        // Example 2: Extract MIME type info
+        String mimeType = snapshot.getMimeType();
+        String mediaType = mimeType != null ? PayloadPaths.segment(mimeType, 0) : null; // image, video, etc.
+        
+        // Example 3: Derive metadata from the binary (checksum, dimensions, page count, XMP).
+        // The original is streamed once with bounded memory, before any write, so a
+        // replayed commit does not read it again.
+        StreamingContentInspector.Result content = contentInspector.inspect(original, mimeType);
+        
+        String metadataPath = metadataResource.getPath();
+        execution.phase(WorkflowMetrics.Phase.PROCESS);
         try {
-            // Example 1: Store extraction timestamp
-            metadata.put(PROP_EXTRACTED_DATE, new Date());
-            
-            // Example 2: Categorize by file size
-            long fileSize = asset.getOriginal().getSize();
-            String sizeCategory = categorizeFileSize(fileSize);
-            metadata.put(PROP_FILE_SIZE_CATEGORY, sizeCategory);
-            
-            // Example 3: Store processing status
-            metadata.put(PROP_PROCESSING_STATUS, "completed");
-            
-            // Example 4: Extract MIME type info
-            String mimeType = asset.getMimeType();
-            if (mimeType != null) {
-                String[] parts = mimeType.split("/");
-                if (parts.length > 0) {
-                    metadata.put("customMediaType", parts[0]); // image, video, application, etc.
+            // Commit changes - per asset, or batched by a bulk runner (see CommitCoalescer).
+            // The writes are replayable, so they look the metadata node up again.
+            CommitCoalescer.commitOrDefer(resolver, snapshot.getPath(), r -> {
+                Resource metadataNode = r.getResource(metadataPath);
+                ModifiableValueMap metadata = metadataNode != null
+                    ? metadataNode.adaptTo(ModifiableValueMap.class) : null;
+                if (metadata == null) {
+                    // Gone or read-only by the time of a replay: fail this asset, and
+                    // record no fingerprint for metadata that was never written
+                    throw new PersistenceException("Metadata node not writable: " + metadataPath);
                 }
-            }
-            
-            // Commit changes
-            resolver.commit();
-            LOG.debug("Custom metadata saved for: {}", asset.getPath());
+                
+                // Example 4: Store extraction timestamp and results
+                metadata.put(PROP_EXTRACTED_DATE, new Date());
+                metadata.put(PROP_FILE_SIZE_CATEGORY, sizeCategory);
+                metadata.putAll(content.getProperties());
+                metadata.put(PROP_CONTENT_INSPECTION, content.isComplete() ? "complete" : "partial");
+                
+                // Example 5: Store processing status
+                metadata.put(PROP_PROCESSING_STATUS, "completed");
+                
+                if (mediaType != null) {
+                    metadata.put("customMediaType", mediaType);
+                }
+                
+                // Safe in the same commit only because this mutation is the extractor's
+                // last work: nothing can fail after it. Add processing after this point
+                // and the fingerprint must move to its own, final commitOrDefer.
+                fingerprint.record(r);
+            });
+            LOG.debug("Custom metadata saved for: {}", snapshot.getPath());
             
         } catch (Exception e) {
             LOG.error("Failed to save custom metadata", e);
+            execution.fail();
         }
+        execution.phase(WorkflowMetrics.Phase.COMMIT);
     }
     
     /**